@@ -0,0 +1,130 @@
+package run.gastos;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.Supplier;
+
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.RemovalCause;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+
+import io.smallrye.mutiny.Uni;
+import jakarta.annotation.PostConstruct;
+import jakarta.enterprise.context.ApplicationScoped;
+
+/**
+ * Cache em memória, limitado por tamanho e TTL, para as leituras agregadas (saldo, por-tags).
+ * As chaves são indexadas por usuário para que uma escrita invalide exatamente as entradas dele.
+ */
+@ApplicationScoped
+public class AggregateCache {
+
+    // Gerações por faixa de usuário: uma leitura iniciada antes de uma invalidação não grava no cache
+    private static final int STRIPES = 1024;
+
+    @ConfigProperty(name = "gastos.cache.enabled", defaultValue = "true")
+    boolean enabled;
+
+    @ConfigProperty(name = "gastos.cache.maximum-size", defaultValue = "10000")
+    long maximumSize;
+
+    @ConfigProperty(name = "gastos.cache.ttl", defaultValue = "60s")
+    Duration ttl;
+
+    private Cache<Key, Object> cache;
+    private final Map<Long, Set<Key>> keysByUser = new ConcurrentHashMap<>();
+    private final AtomicLongArray generations = new AtomicLongArray(STRIPES);
+
+    @PostConstruct
+    void init() {
+        cache = Caffeine.newBuilder()
+            .maximumSize(maximumSize)
+            .expireAfterWrite(ttl)
+            .recordStats()
+            // Síncrono: o índice por usuário é atualizado na própria thread da remoção
+            .executor(Runnable::run)
+            .removalListener((Key key, Object value, RemovalCause cause) -> unindex(key, cause))
+            .build();
+    }
+
+    /**
+     * Retorna o valor em cache ou executa {@code loader} e guarda o resultado.
+     * {@code query} identifica a consulta e seus parâmetros (ex.: "por-tags:2025-01-01:2025-01-31").
+     */
+    @SuppressWarnings("unchecked")
+    public <T> Uni<T> get(Long userId, String query, Supplier<Uni<T>> loader) {
+        if (!enabled) {
+            return loader.get();
+        }
+        Key key = new Key(userId, query);
+        Object cached = cache.getIfPresent(key);
+        if (cached != null) {
+            return Uni.createFrom().item((T) cached);
+        }
+        long generation = generations.get(stripe(userId));
+        return loader.get().invoke(value -> {
+            if (value == null || generations.get(stripe(userId)) != generation) {
+                return;
+            }
+            cache.put(key, value);
+            // Indexa depois do put, sob o lock do usuário: uma expiração concorrente da mesma chave
+            // só a tira do índice se o mapeamento já tiver sumido (ver unindex)
+            keysByUser.compute(userId, (id, keys) -> {
+                Set<Key> indexed = keys != null ? keys : ConcurrentHashMap.newKeySet();
+                indexed.add(key);
+                return indexed;
+            });
+            if (generations.get(stripe(userId)) != generation) {
+                // Uma escrita invalidou o usuário durante o put
+                cache.invalidate(key);
+            }
+        });
+    }
+
+    // REPLACED e remoções explícitas não mexem no índice: a chave continua (ou foi tirada por invalidateUser)
+    private void unindex(Key key, RemovalCause cause) {
+        if (key == null || !cause.wasEvicted()) {
+            return;
+        }
+        keysByUser.computeIfPresent(key.userId(), (userId, keys) -> {
+            if (!cache.asMap().containsKey(key)) {
+                keys.remove(key);
+            }
+            return keys.isEmpty() ? null : keys;
+        });
+    }
+
+    /**
+     * Remove todas as entradas do usuário. Deve ser chamado depois do commit da escrita.
+     */
+    public void invalidateUser(Long userId) {
+        if (!enabled || userId == null) {
+            return;
+        }
+        generations.incrementAndGet(stripe(userId));
+        Set<Key> keys = keysByUser.remove(userId);
+        if (keys != null) {
+            cache.invalidateAll(keys);
+        }
+    }
+
+    public CacheStats stats() {
+        return cache.stats();
+    }
+
+    public long size() {
+        return cache.estimatedSize();
+    }
+
+    private static int stripe(Long userId) {
+        return Long.hashCode(userId) & (STRIPES - 1);
+    }
+
+    private record Key(Long userId, String query) {}
+}
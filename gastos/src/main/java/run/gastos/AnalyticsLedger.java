@@ -0,0 +1,110 @@
+package run.gastos;
+
+import java.time.LocalDate;
+import java.util.List;
+
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+
+import io.quarkus.hibernate.reactive.panache.Panache;
+import io.quarkus.runtime.configuration.MemorySize;
+import io.smallrye.mutiny.Uni;
+import jakarta.annotation.PostConstruct;
+import jakarta.enterprise.context.ApplicationScoped;
+import run.gastos.model.Despesa;
+import run.gastos.model.DespesaSnapshot;
+import run.gastos.model.UserDataVersion;
+
+/**
+ * Motor analítico em memória (opcional): um {@link ColumnarLedger} por usuário ativo,
+ * carregado na primeira leitura, atualizado pelas escritas confirmadas e despejado quando
+ * o total estimado passa de {@code gastos.ledger.memory-budget}.
+ *
+ * <p>Cada ledger guarda a versão dos dados em que foi montado. Uma leitura só usa o ledger
+ * se ele estiver na versão atual do usuário; senão recarrega do banco.
+ */
+@ApplicationScoped
+public class AnalyticsLedger {
+
+    private static final String LOAD_QUERY =
+        "SELECT d.date, d.amountCents, d.tag, d.operation FROM Despesa d WHERE d.idUser = :userId";
+
+    @ConfigProperty(name = "gastos.ledger.enabled", defaultValue = "false")
+    boolean enabled;
+
+    @ConfigProperty(name = "gastos.ledger.memory-budget", defaultValue = "64M")
+    MemorySize memoryBudget;
+
+    private Cache<Long, ColumnarLedger> ledgers;
+
+    @PostConstruct
+    void init() {
+        ledgers = Caffeine.newBuilder()
+            .maximumWeight(memoryBudget.asLongValue())
+            .weigher((Long userId, ColumnarLedger ledger) -> ledger.weight())
+            .recordStats()
+            .build();
+    }
+
+    public boolean enabled() {
+        return enabled;
+    }
+
+    /**
+     * Ledger do usuário numa versão igual ou posterior a {@code version}.
+     */
+    public Uni<ColumnarLedger> get(Long userId, long version) {
+        ColumnarLedger cached = ledgers.getIfPresent(userId);
+        if (cached != null && cached.version() >= version) {
+            return Uni.createFrom().item(cached);
+        }
+        // Versão e linhas na mesma transação: no REPEATABLE READ do InnoDB as duas leituras
+        // enxergam o mesmo snapshot, então a versão descreve exatamente as linhas carregadas
+        return Panache.withTransaction(() -> UserDataVersion.current(userId)
+                .chain(current -> Panache.getSession()
+                    .chain(session -> session.createSelectionQuery(LOAD_QUERY, Object[].class)
+                        .setParameter("userId", userId)
+                        .setReadOnly(true)
+                        .getResultList())
+                    .map(rows -> build(current, rows))))
+            .invoke(loaded -> ledgers.asMap().merge(userId, loaded,
+                (old, fresh) -> old.version() >= fresh.version() ? old : fresh));
+    }
+
+    /**
+     * Aplica uma escrita confirmada na versão {@code version}, com todas as linhas que mudaram
+     * nela (um lote ou um grupo do group commit vem numa única chamada). Só avança um ledger que
+     * estava exatamente na versão anterior; qualquer outro caso (escritas fora de ordem, versão
+     * já aplicada, reconciliação) descarta o ledger, que é recarregado na próxima leitura.
+     */
+    public void committed(Long userId, long version, List<DespesaSnapshot> removed, List<DespesaSnapshot> added) {
+        if (!enabled) {
+            return;
+        }
+        ledgers.asMap().computeIfPresent(userId, (id, ledger) ->
+            ledger.version() == version - 1 ? ledger.apply(version, removed, added) : null);
+    }
+
+    public CacheStats stats() {
+        return ledgers.stats();
+    }
+
+    public long size() {
+        return ledgers.estimatedSize();
+    }
+
+    private static ColumnarLedger build(long version, List<Object[]> rows) {
+        ColumnarLedger.Builder builder = new ColumnarLedger.Builder(rows.size());
+        for (Object[] row : rows) {
+            Despesa.operations operation = (Despesa.operations) row[3];
+            builder.add((int) ((LocalDate) row[0]).toEpochDay(),
+                ((Number) row[1]).longValue(),
+                (String) row[2],
+                operation == Despesa.operations.C ? ColumnarLedger.CREDIT : ColumnarLedger.DEBIT);
+        }
+        return builder.build(version);
+    }
+}
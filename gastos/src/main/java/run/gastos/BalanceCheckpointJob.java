@@ -0,0 +1,66 @@
+package run.gastos;
+
+import java.util.List;
+
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+
+import io.quarkus.hibernate.reactive.panache.Panache;
+import io.quarkus.logging.Log;
+import io.quarkus.scheduler.Scheduled;
+import io.smallrye.mutiny.Uni;
+import jakarta.enterprise.context.ApplicationScoped;
+import run.gastos.model.BalanceCheckpoint;
+import run.gastos.model.BalanceCheckpointDirty;
+import run.gastos.model.TagRollup;
+
+/**
+ * Job que recalcula os checkpoints mensais de saldo dos usuários com meses pendentes
+ * (edições retroativas incluídas). Cada usuário só tem refeitos os meses a partir do mais
+ * antigo afetado, numa transação própria para manter as travas curtas.
+ */
+@ApplicationScoped
+public class BalanceCheckpointJob {
+
+    @ConfigProperty(name = "gastos.saldo.checkpoint.chunk-size", defaultValue = "200")
+    int chunkSize;
+
+    @Scheduled(every = "{gastos.saldo.checkpoint.every}", delayed = "30s",
+               concurrentExecution = Scheduled.ConcurrentExecution.SKIP)
+    Uni<Void> recomputePending() {
+        return recomputeFrom(0L, 0)
+            .invoke(checkpoints -> {
+                if (checkpoints > 0) {
+                    Log.infof("Checkpoints de saldo recalculados: %d mês(es)", checkpoints);
+                }
+            })
+            .replaceWithVoid();
+    }
+
+    private Uni<Integer> recomputeFrom(Long afterUserId, int soFar) {
+        return Panache.withSession(() -> BalanceCheckpointDirty.pendingAfter(afterUserId, chunkSize))
+            .chain(userIds -> {
+                if (userIds.isEmpty()) {
+                    return Uni.createFrom().item(soFar);
+                }
+                Long last = userIds.get(userIds.size() - 1);
+                return recomputeUsers(userIds)
+                    .chain(written -> userIds.size() < chunkSize
+                        ? Uni.createFrom().item(soFar + written)
+                        : recomputeFrom(last, soFar + written));
+            });
+    }
+
+    private static Uni<Integer> recomputeUsers(List<Long> userIds) {
+        Uni<Integer> chain = Uni.createFrom().item(0);
+        for (Long userId : userIds) {
+            // Semeia numa transação separada: recompute precisa começar pela trava da marca
+            chain = chain.chain(total -> Panache.withSession(() -> TagRollup.ensureSeeded(userId))
+                .chain(() -> Panache.withTransaction(() -> BalanceCheckpoint.recompute(userId)))
+                .onFailure().invoke(failure -> Log.warnf(failure, "Falha ao recalcular checkpoints do usuário %d", userId))
+                // Usuário com falha continua marcado e entra na próxima execução
+                .onFailure().recoverWithItem(0)
+                .map(written -> total + written));
+        }
+        return chain;
+    }
+}
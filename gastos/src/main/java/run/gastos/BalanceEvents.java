@@ -0,0 +1,137 @@
+package run.gastos;
+
+import java.time.Duration;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+
+import io.quarkus.hibernate.reactive.panache.Panache;
+import io.quarkus.logging.Log;
+import io.smallrye.mutiny.Multi;
+import io.smallrye.mutiny.Uni;
+import io.smallrye.mutiny.operators.multi.processors.BroadcastProcessor;
+import io.smallrye.mutiny.operators.multi.processors.SerializedProcessor;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import run.gastos.model.BalanceUpdate;
+import run.gastos.model.Despesa;
+import run.gastos.model.DespesaSnapshot;
+import run.gastos.model.TagRollup;
+import run.gastos.model.TagSum;
+import run.gastos.model.UserBalance;
+import run.gastos.model.UserDataVersion;
+
+/**
+ * Distribui, por usuário, o saldo e os totais por tag atualizados depois de cada escrita
+ * confirmada. Só há consulta quando o usuário tem alguma conexão aberta; cada conexão tem
+ * buffer limitado e é encerrada se não acompanhar os eventos.
+ */
+@ApplicationScoped
+public class BalanceEvents {
+
+    @ConfigProperty(name = "gastos.events.buffer-size", defaultValue = "16")
+    int bufferSize;
+
+    @ConfigProperty(name = "gastos.events.heartbeat", defaultValue = "15s")
+    Duration heartbeat;
+
+    @Inject
+    AggregateCache aggregateCache;
+
+    private final Map<Long, Channel> channels = new ConcurrentHashMap<>();
+
+    public Multi<BalanceUpdate> subscribe(Long userId) {
+        Multi<BalanceUpdate> live = Multi.createFrom().deferred(() -> {
+                Channel channel = channels.compute(userId, (id, current) -> {
+                    Channel result = current != null ? current : new Channel();
+                    result.subscribers++;
+                    return result;
+                });
+                return channel.processor;
+            })
+            .onTermination().invoke(() -> channels.computeIfPresent(userId, (id, current) ->
+                --current.subscribers == 0 ? null : current));
+
+        // Estado atual logo na conexão; a versão permite ao cliente ordenar com os eventos ao vivo
+        Multi<BalanceUpdate> initial = load(userId, List.of()).toMulti();
+        // Mantém a conexão ativa em proxies e no gateway mesmo sem escritas
+        Multi<BalanceUpdate> keepAlive = Multi.createFrom().ticks().every(heartbeat).map(tick -> BalanceUpdate.heartbeat());
+
+        return Multi.createBy().merging().streams(live, initial, keepAlive)
+            // Consumidor lento: estoura o buffer, o stream falha e a conexão é encerrada
+            .onOverflow().buffer(bufferSize);
+    }
+
+    /**
+     * Deve ser chamado depois do commit. {@code touched} são os estados (antes e depois) das despesas alteradas.
+     */
+    public void publish(Long userId, Collection<DespesaSnapshot> touched) {
+        Channel channel = channels.get(userId);
+        if (channel == null) {
+            return;
+        }
+        load(userId, touched).subscribe().with(
+            channel.processor::onNext,
+            failure -> Log.warnf(failure, "Falha ao montar evento de saldo do usuário %d", userId));
+    }
+
+    private Uni<BalanceUpdate> load(Long userId, Collection<DespesaSnapshot> touched) {
+        // Só débitos entram em por-tags; agrupa as tags afetadas por mês
+        Map<YearMonth, Set<String>> tagsByMonth = new TreeMap<>();
+        for (DespesaSnapshot despesa : touched) {
+            if (despesa.operation() == Despesa.operations.D) {
+                tagsByMonth.computeIfAbsent(YearMonth.from(despesa.date()), month -> new TreeSet<>())
+                    .add(TagRollup.keyTag(despesa.tag()));
+            }
+        }
+
+        return Panache.withSession(() -> UserDataVersion.current(userId))
+            .chain(version -> aggregateCache.get(userId, "saldo",
+                    () -> Panache.withTransaction(() -> UserBalance.findSaldo(userId)))
+                .chain(saldo -> monthTotals(userId, tagsByMonth)
+                    .map(months -> new BalanceUpdate(BalanceUpdate.UPDATE, version, saldo, months))));
+    }
+
+    private static Uni<List<BalanceUpdate.MonthTags>> monthTotals(Long userId, Map<YearMonth, Set<String>> tagsByMonth) {
+        List<BalanceUpdate.MonthTags> months = new ArrayList<>();
+        if (tagsByMonth.isEmpty()) {
+            return Uni.createFrom().item(months);
+        }
+        return Panache.withSession(() -> {
+            // Sessão reativa não aceita consultas concorrentes: um mês por vez
+            Uni<Void> chain = Uni.createFrom().voidItem();
+            for (Map.Entry<YearMonth, Set<String>> entry : tagsByMonth.entrySet()) {
+                YearMonth month = entry.getKey();
+                chain = chain.call(() -> TagSum.getTagsByUserId(userId, month.atDay(1), month.atEndOfMonth())
+                    .invoke(sums -> {
+                        List<TagSum> affected = new ArrayList<>();
+                        for (String tag : entry.getValue()) {
+                            long total = 0;
+                            for (TagSum sum : sums) {
+                                if (TagRollup.keyTag(sum.getTag()).equals(tag)) {
+                                    total = sum.getTotalCents();
+                                }
+                            }
+                            affected.add(new TagSum(TagRollup.fromKeyTag(tag), total));
+                        }
+                        months.add(new BalanceUpdate.MonthTags(month.toString(), affected));
+                    }));
+            }
+            return chain.replaceWith(months);
+        });
+    }
+
+    private static final class Channel {
+        // Publicações chegam de loads concluídos em threads diferentes: onNext precisa ser serializado
+        final SerializedProcessor<BalanceUpdate, BalanceUpdate> processor = BroadcastProcessor.<BalanceUpdate>create().serialized();
+        int subscribers;
+    }
+}
@@ -0,0 +1,54 @@
+package run.gastos;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+
+import io.quarkus.vertx.http.ManagementInterface;
+import io.vertx.core.json.JsonObject;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.event.Observes;
+import jakarta.inject.Inject;
+
+/**
+ * Contadores dos caches em /gastos/cache/stats na interface de gerenciamento
+ * (quarkus.management.port), fora da porta pública da API.
+ */
+@ApplicationScoped
+public class CacheResource {
+
+    @Inject
+    AggregateCache aggregateCache;
+
+    @Inject
+    AnalyticsLedger ledger;
+
+    void registerRoutes(@Observes ManagementInterface management) {
+        management.router().get("/gastos/cache/stats").handler(ctx -> ctx.response()
+            .putHeader("Content-Type", "application/json")
+            .end(new JsonObject(stats()).encode()));
+    }
+
+    // Contadores para dimensionar gastos.cache.maximum-size e gastos.cache.ttl
+    Map<String, Object> stats() {
+        CacheStats stats = aggregateCache.stats();
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("size", aggregateCache.size());
+        result.put("hits", stats.hitCount());
+        result.put("misses", stats.missCount());
+        result.put("hitRate", stats.hitRate());
+        result.put("evictions", stats.evictionCount());
+        if (ledger.enabled()) {
+            // Ledgers colunares em memória e despejos pelo orçamento de gastos.ledger.memory-budget
+            CacheStats ledgerStats = ledger.stats();
+            Map<String, Object> ledgerResult = new LinkedHashMap<>();
+            ledgerResult.put("users", ledger.size());
+            ledgerResult.put("hits", ledgerStats.hitCount());
+            ledgerResult.put("misses", ledgerStats.missCount());
+            ledgerResult.put("evictions", ledgerStats.evictionCount());
+            result.put("ledger", ledgerResult);
+        }
+        return result;
+    }
+}
@@ -0,0 +1,89 @@
+package run.gastos;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.HexFormat;
+
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+
+import io.smallrye.jwt.auth.principal.DefaultJWTCallerPrincipalFactory;
+import io.smallrye.jwt.auth.principal.JWTAuthContextInfo;
+import io.smallrye.jwt.auth.principal.JWTCallerPrincipal;
+import io.smallrye.jwt.auth.principal.ParseException;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.Priority;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.inject.Alternative;
+
+/**
+ * Guarda tokens já verificados (assinatura RS256 inclusa), indexados pelo SHA-256 do token.
+ * Cada entrada expira no "exp" do próprio token, então um token vencido nunca é aceito pelo cache.
+ */
+@ApplicationScoped
+@Alternative
+@Priority(1)
+public class CachingJWTCallerPrincipalFactory extends DefaultJWTCallerPrincipalFactory {
+
+    @ConfigProperty(name = "gastos.jwt-cache.maximum-size", defaultValue = "10000")
+    long maximumSize;
+
+    @ConfigProperty(name = "gastos.jwt-cache.max-ttl", defaultValue = "5m")
+    Duration maxTtl;
+
+    private Cache<String, JWTCallerPrincipal> verified;
+
+    @PostConstruct
+    void init() {
+        verified = Caffeine.newBuilder()
+            .maximumSize(maximumSize)
+            .expireAfter(new Expiry<String, JWTCallerPrincipal>() {
+                @Override
+                public long expireAfterCreate(String key, JWTCallerPrincipal principal, long currentTime) {
+                    return nanosUntilExpiration(principal);
+                }
+
+                @Override
+                public long expireAfterUpdate(String key, JWTCallerPrincipal principal, long currentTime, long currentDuration) {
+                    return nanosUntilExpiration(principal);
+                }
+
+                @Override
+                public long expireAfterRead(String key, JWTCallerPrincipal principal, long currentTime, long currentDuration) {
+                    return currentDuration;
+                }
+            })
+            .build();
+    }
+
+    @Override
+    public JWTCallerPrincipal parse(String token, JWTAuthContextInfo authContextInfo) throws ParseException {
+        String key = sha256(token);
+        JWTCallerPrincipal principal = verified.getIfPresent(key);
+        if (principal != null && principal.getExpirationTime() > System.currentTimeMillis() / 1000) {
+            return principal;
+        }
+        principal = super.parse(token, authContextInfo);
+        verified.put(key, principal);
+        return principal;
+    }
+
+    private long nanosUntilExpiration(JWTCallerPrincipal principal) {
+        long untilExp = principal.getExpirationTime() * 1000 - System.currentTimeMillis();
+        return Duration.ofMillis(Math.max(0, Math.min(untilExp, maxTtl.toMillis()))).toNanos();
+    }
+
+    private static String sha256(String token) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(token.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,277 @@
+package run.gastos;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import run.gastos.model.Despesa;
+import run.gastos.model.DespesaSnapshot;
+import run.gastos.model.TagSum;
+
+/**
+ * Despesas de um usuário em colunas primitivas ordenadas por data (epoch-day, centavos, id da
+ * tag, operação), com somas de prefixo do saldo e, por tag, dos débitos. Somas por intervalo de
+ * datas saem com duas buscas binárias, sem tocar no banco nem criar entidades.
+ *
+ * <p>Imutável: uma escrita gera uma nova instância ({@link #apply}) e as leituras em andamento
+ * continuam na anterior, sem travas.
+ */
+public final class ColumnarLedger {
+
+    static final byte DEBIT = 0;
+    static final byte CREDIT = 1;
+
+    private final long version;
+    private final int size;
+    private final int[] days;
+    private final long[] cents;
+    private final int[] tagIds;
+    private final byte[] ops;
+    private final String[] tags;
+
+    // signedPrefix[i] = saldo em centavos das i primeiras linhas
+    private final long[] signedPrefix;
+    // Por tag: datas dos débitos e soma de prefixo dos respectivos valores
+    private final int[][] debitDays;
+    private final long[][] debitPrefix;
+
+    private ColumnarLedger(long version, int size, int[] days, long[] cents, int[] tagIds, byte[] ops, String[] tags) {
+        this.version = version;
+        this.size = size;
+        this.days = days;
+        this.cents = cents;
+        this.tagIds = tagIds;
+        this.ops = ops;
+        this.tags = tags;
+
+        signedPrefix = new long[size + 1];
+        int[] debitCounts = new int[tags.length];
+        for (int i = 0; i < size; i++) {
+            signedPrefix[i + 1] = signedPrefix[i] + (ops[i] == CREDIT ? cents[i] : -cents[i]);
+            if (ops[i] == DEBIT) {
+                debitCounts[tagIds[i]]++;
+            }
+        }
+        debitDays = new int[tags.length][];
+        debitPrefix = new long[tags.length][];
+        for (int t = 0; t < tags.length; t++) {
+            debitDays[t] = new int[debitCounts[t]];
+            debitPrefix[t] = new long[debitCounts[t] + 1];
+        }
+        int[] filled = new int[tags.length];
+        for (int i = 0; i < size; i++) {
+            if (ops[i] == DEBIT) {
+                int t = tagIds[i];
+                int k = filled[t]++;
+                debitDays[t][k] = days[i];
+                debitPrefix[t][k + 1] = debitPrefix[t][k] + cents[i];
+            }
+        }
+    }
+
+    /**
+     * Monta o ledger a partir de linhas em qualquer ordem.
+     */
+    public static ColumnarLedger of(long version, List<DespesaSnapshot> rows) {
+        Builder builder = new Builder(rows.size());
+        for (DespesaSnapshot row : rows) {
+            builder.add(row);
+        }
+        return builder.build(version);
+    }
+
+    public long version() {
+        return version;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    // Estimativa em bytes usada pelo orçamento de memória
+    public int weight() {
+        long bytes = 64L + size * (4L + 8 + 4 + 1 + 8 + 4 + 8) + tags.length * 96L;
+        return (int) Math.min(Integer.MAX_VALUE, bytes);
+    }
+
+    // Saldo em centavos
+    public long saldo() {
+        return signedPrefix[size];
+    }
+
+    /**
+     * Total de débitos por tag no intervalo (limites inclusivos; nulo = sem limite). Só aparecem
+     * tags com ao menos um débito no intervalo, como na consulta agregada do banco.
+     */
+    public List<TagSum> debitByTag(LocalDate start, LocalDate end) {
+        int from = start == null ? Integer.MIN_VALUE : (int) start.toEpochDay();
+        int to = end == null ? Integer.MAX_VALUE : (int) end.toEpochDay();
+        List<TagSum> result = new ArrayList<>();
+        if (from > to) {
+            return result;
+        }
+        for (int t = 0; t < tags.length; t++) {
+            int lo = lowerBound(debitDays[t], debitDays[t].length, from);
+            int hi = upperBound(debitDays[t], debitDays[t].length, to);
+            if (hi > lo) {
+                result.add(new TagSum(tags[t], debitPrefix[t][hi] - debitPrefix[t][lo]));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Aplica uma escrita já confirmada: remove uma linha equivalente a cada {@code removed} e
+     * insere {@code added}. Linhas com os mesmos campos são indistinguíveis para as somas, então
+     * o id não é necessário.
+     *
+     * @return o novo ledger, ou nulo se alguma linha a remover não existir (ledger divergente)
+     */
+    public ColumnarLedger apply(long newVersion, List<DespesaSnapshot> removed, List<DespesaSnapshot> added) {
+        boolean[] dropped = new boolean[size];
+        Map<String, Integer> tagIndex = tagIndex();
+        for (DespesaSnapshot row : removed) {
+            Integer tagId = tagIndex.get(row.tag());
+            if (tagId == null) {
+                return null;
+            }
+            int day = (int) row.date().toEpochDay();
+            long value = row.amountCents();
+            byte op = opOf(row.operation());
+            int i = lowerBound(days, size, day);
+            while (i < size && days[i] == day
+                && (dropped[i] || cents[i] != value || tagIds[i] != tagId || ops[i] != op)) {
+                i++;
+            }
+            if (i == size || days[i] != day) {
+                return null;
+            }
+            dropped[i] = true;
+        }
+
+        Builder builder = new Builder(size - removed.size() + added.size());
+        for (int i = 0; i < size; i++) {
+            if (!dropped[i]) {
+                builder.add(days[i], cents[i], tags[tagIds[i]], ops[i]);
+            }
+        }
+        for (DespesaSnapshot row : added) {
+            builder.add(row);
+        }
+        return builder.build(newVersion);
+    }
+
+    private Map<String, Integer> tagIndex() {
+        Map<String, Integer> index = new HashMap<>(tags.length * 2);
+        for (int t = 0; t < tags.length; t++) {
+            index.put(tags[t], t);
+        }
+        return index;
+    }
+
+    // Primeiro índice com valor >= key
+    private static int lowerBound(int[] values, int length, int key) {
+        int lo = 0;
+        int hi = length;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (values[mid] < key) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return lo;
+    }
+
+    // Primeiro índice com valor > key
+    private static int upperBound(int[] values, int length, int key) {
+        int lo = 0;
+        int hi = length;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (values[mid] <= key) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return lo;
+    }
+
+    private static byte opOf(Despesa.operations operation) {
+        return operation == Despesa.operations.C ? CREDIT : DEBIT;
+    }
+
+    /**
+     * Acumula linhas em colunas e ordena por data no fim. A ordenação é feita sobre longs
+     * (epoch-day nos 32 bits altos, posição nos baixos), sem objetos por linha.
+     */
+    static final class Builder {
+        private int count;
+        private int[] days;
+        private long[] cents;
+        private int[] tagIds;
+        private byte[] ops;
+        private final List<String> tags = new ArrayList<>();
+        private final Map<String, Integer> tagIndex = new HashMap<>();
+
+        Builder(int expected) {
+            int capacity = Math.max(expected, 8);
+            days = new int[capacity];
+            cents = new long[capacity];
+            tagIds = new int[capacity];
+            ops = new byte[capacity];
+        }
+
+        void add(DespesaSnapshot row) {
+            add((int) row.date().toEpochDay(), row.amountCents(), row.tag(), opOf(row.operation()));
+        }
+
+        void add(int day, long value, String tag, byte op) {
+            if (count == days.length) {
+                int capacity = count * 2;
+                days = Arrays.copyOf(days, capacity);
+                cents = Arrays.copyOf(cents, capacity);
+                tagIds = Arrays.copyOf(tagIds, capacity);
+                ops = Arrays.copyOf(ops, capacity);
+            }
+            Integer tagId = tagIndex.get(tag);
+            if (tagId == null) {
+                tagId = tags.size();
+                tags.add(tag);
+                tagIndex.put(tag, tagId);
+            }
+            days[count] = day;
+            cents[count] = value;
+            tagIds[count] = tagId;
+            ops[count] = op;
+            count++;
+        }
+
+        ColumnarLedger build(long version) {
+            long[] order = new long[count];
+            for (int i = 0; i < count; i++) {
+                order[i] = ((long) days[i] << 32) | i;
+            }
+            Arrays.sort(order);
+
+            int[] sortedDays = new int[count];
+            long[] sortedCents = new long[count];
+            int[] sortedTags = new int[count];
+            byte[] sortedOps = new byte[count];
+            for (int k = 0; k < count; k++) {
+                int i = (int) order[k];
+                sortedDays[k] = days[i];
+                sortedCents[k] = cents[i];
+                sortedTags[k] = tagIds[i];
+                sortedOps[k] = ops[i];
+            }
+            return new ColumnarLedger(version, count, sortedDays, sortedCents, sortedTags, sortedOps,
+                tags.toArray(new String[0]));
+        }
+    }
+}
@@ -0,0 +1,54 @@
+package run.gastos;
+
+import org.eclipse.microprofile.jwt.JsonWebToken;
+
+import io.quarkus.security.identity.SecurityIdentity;
+import jakarta.enterprise.context.RequestScoped;
+import jakarta.inject.Inject;
+import jakarta.ws.rs.WebApplicationException;
+import jakarta.ws.rs.core.Response;
+
+/**
+ * Id do usuário autenticado, lido do claim "id" do JWT uma única vez por requisição.
+ */
+@RequestScoped
+public class CurrentUser {
+
+    @Inject
+    SecurityIdentity securityIdentity;
+
+    @Inject
+    JsonWebToken jwt;
+
+    private Long id;
+
+    /**
+     * @throws WebApplicationException 401 se não houver token ou claim "id", 400 se o claim não for numérico
+     */
+    public Long id() {
+        if (id == null) {
+            id = resolve();
+        }
+        return id;
+    }
+
+    private Long resolve() {
+        // Validação do token JWT se o token está nulo
+        if (securityIdentity == null || securityIdentity.isAnonymous() || jwt == null) {
+            throw new WebApplicationException("Token Vazio", Response.Status.UNAUTHORIZED);
+        }
+
+        //Validar se o campo id existe no token
+        Object idClaim = jwt.getClaim("id");
+        if (idClaim == null) {
+            throw new WebApplicationException("Token inválido", Response.Status.UNAUTHORIZED);
+        }
+
+        // Criação do id Long baseado no token JWT (forma simples e resiliente)
+        try {
+            return Long.parseLong(idClaim.toString());
+        } catch (Exception e) {
+            throw new WebApplicationException("Token inválido", Response.Status.BAD_REQUEST);
+        }
+    }
+}
@@ -0,0 +1,100 @@
+package run.gastos;
+
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import io.smallrye.mutiny.Uni;
+import jakarta.enterprise.context.ApplicationScoped;
+import run.gastos.model.BalanceCheckpointDirty;
+import run.gastos.model.Despesa;
+import run.gastos.model.DespesaSnapshot;
+import run.gastos.model.TagRollup;
+import run.gastos.model.UserBalance;
+import run.gastos.model.UserDataVersion;
+
+/**
+ * Ponto único onde as escritas de Despesa atualizam os agregados derivados
+ * (ledger de saldo, rollup mensal por tag, checkpoints de saldo e versão dos dados do usuário),
+ * sempre na transação da própria escrita.
+ */
+@ApplicationScoped
+public class DespesaAggregates {
+
+    /**
+     * Reserva o número da próxima mudança do usuário (incrementando a versão dos dados).
+     * Deve ser a primeira escrita da transação: trava a linha de versão antes do ledger e do
+     * rollup, na mesma ordem usada pela reconciliação, e o número vai para {@code Despesa.changeSeq}
+     * ou para o tombstone antes do flush.
+     */
+    public Uni<Long> nextChange(Long userId) {
+        return UserDataVersion.bump(userId);
+    }
+
+    /**
+     * Aplica uma alteração de despesa. {@code before} é nulo numa criação e {@code after} numa remoção.
+     */
+    public Uni<Void> apply(DespesaSnapshot before, DespesaSnapshot after) {
+        DespesaSnapshot any = after != null ? after : before;
+        long delta = (after != null ? after.signedCents() : 0) - (before != null ? before.signedCents() : 0);
+
+        Map<RollupKey, long[]> rollups = new LinkedHashMap<>();
+        if (before != null) {
+            addRollup(rollups, before, -before.amountCents());
+        }
+        if (after != null) {
+            addRollup(rollups, after, after.amountCents());
+        }
+        LocalDate earliest = before == null ? after.date()
+            : after == null || before.date().isBefore(after.date()) ? before.date() : after.date();
+        return UserBalance.applyDelta(any.idUser(), delta)
+            .call(() -> applyRollups(any.idUser(), rollups))
+            .call(() -> markCheckpoints(any.idUser(), earliest));
+    }
+
+    /**
+     * Aplica várias despesas novas do mesmo usuário, agrupando os deltas antes de ir ao banco.
+     */
+    public Uni<Void> applyCreated(Long userId, List<DespesaSnapshot> created) {
+        long delta = 0;
+        LocalDate earliest = null;
+        Map<RollupKey, long[]> rollups = new LinkedHashMap<>();
+        for (DespesaSnapshot despesa : created) {
+            delta += despesa.signedCents();
+            addRollup(rollups, despesa, despesa.amountCents());
+            if (earliest == null || despesa.date().isBefore(earliest)) {
+                earliest = despesa.date();
+            }
+        }
+        LocalDate from = earliest;
+        return UserBalance.applyDelta(userId, delta)
+            .call(() -> applyRollups(userId, rollups))
+            .call(() -> from == null ? Uni.createFrom().voidItem() : markCheckpoints(userId, from));
+    }
+
+    // Por último na transação: o job de checkpoints trava esta marca antes de ler os rollups
+    private static Uni<Void> markCheckpoints(Long userId, LocalDate earliest) {
+        return BalanceCheckpointDirty.mark(userId, TagRollup.yearMonthOf(YearMonth.from(earliest)));
+    }
+
+    // Acumulador long[1] por chave: os centavos são somados sem criar um Long a cada despesa
+    private static void addRollup(Map<RollupKey, long[]> rollups, DespesaSnapshot despesa, long cents) {
+        RollupKey key = new RollupKey(YearMonth.from(despesa.date()), TagRollup.keyTag(despesa.tag()), despesa.operation());
+        rollups.computeIfAbsent(key, k -> new long[1])[0] += cents;
+    }
+
+    private static Uni<Void> applyRollups(Long userId, Map<RollupKey, long[]> rollups) {
+        // A sessão reativa não aceita operações concorrentes, então os upserts vão em sequência
+        Uni<Void> chain = Uni.createFrom().voidItem();
+        for (Map.Entry<RollupKey, long[]> entry : rollups.entrySet()) {
+            RollupKey key = entry.getKey();
+            long cents = entry.getValue()[0];
+            chain = chain.call(() -> TagRollup.add(userId, key.month(), key.tag(), key.operation(), cents));
+        }
+        return chain;
+    }
+
+    private record RollupKey(YearMonth month, String tag, Despesa.operations operation) {}
+}
@@ -0,0 +1,190 @@
+package run.gastos;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+
+import io.quarkus.hibernate.reactive.panache.Panache;
+import io.quarkus.logging.Log;
+import io.smallrye.mutiny.Uni;
+import io.vertx.core.Context;
+import io.vertx.core.Vertx;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import run.gastos.model.Despesa;
+import run.gastos.model.DespesaSnapshot;
+
+/**
+ * Group commit opcional para o create: criações simultâneas esperam até {@code linger} ou até
+ * {@code max-batch-size} linhas e são gravadas numa única transação, com um único commit para o
+ * grupo. Cada chamador recebe a própria despesa, com id, depois do commit. Em troca, cada create
+ * espera até {@code linger} a mais; o saldo entre as duas coisas depende do banco e da carga.
+ *
+ * <p>O primeiro chamador de um grupo agenda o flush no seu contexto Vert.x; quem completa o
+ * tamanho máximo faz o flush na hora. Se a transação do grupo falhar, as despesas são regravadas
+ * uma a uma para que um erro não derrube as demais.
+ */
+@ApplicationScoped
+public class DespesaGroupCommit {
+
+    @ConfigProperty(name = "gastos.group-commit.enabled", defaultValue = "false")
+    boolean enabled;
+
+    @ConfigProperty(name = "gastos.group-commit.max-batch-size", defaultValue = "100")
+    int maxBatchSize;
+
+    @ConfigProperty(name = "gastos.group-commit.linger", defaultValue = "5ms")
+    Duration linger;
+
+    @Inject
+    DespesaAggregates aggregates;
+
+    private List<Pending> open;
+
+    public boolean enabled() {
+        return enabled;
+    }
+
+    /**
+     * Efeitos pós-commit de uma escrita (cache, ledger, SSE), chamados uma vez por usuário do
+     * grupo com todas as despesas criadas dele: todas compartilham o mesmo changeSeq.
+     */
+    @FunctionalInterface
+    public interface Committed {
+        void accept(Long userId, long version, List<DespesaSnapshot> created);
+    }
+
+    public Uni<Despesa> submit(Despesa despesa, Committed committed) {
+        return Uni.createFrom().deferred(() -> {
+            Context context = Vertx.currentContext();
+            Pending pending = new Pending(despesa, committed, context, new CompletableFuture<>());
+            List<Pending> full = null;
+            List<Pending> started = null;
+            synchronized (this) {
+                if (open == null) {
+                    open = new ArrayList<>(maxBatchSize);
+                    started = open;
+                }
+                open.add(pending);
+                if (open.size() >= maxBatchSize) {
+                    full = open;
+                    open = null;
+                }
+            }
+            if (full != null) {
+                flush(full);
+            } else if (started != null) {
+                List<Pending> batch = started;
+                context.owner().setTimer(Math.max(1, linger.toMillis()), timer -> {
+                    synchronized (this) {
+                        if (open != batch) {
+                            // Já foi gravado ao atingir o tamanho máximo
+                            return;
+                        }
+                        open = null;
+                    }
+                    flush(batch);
+                });
+            }
+            // copy(): um chamador que desiste não cancela o resultado dos outros
+            return Uni.createFrom().completionStage(pending.result()::copy);
+        });
+    }
+
+    private void flush(List<Pending> batch) {
+        List<Despesa> despesas = batch.stream().map(Pending::despesa).toList();
+        Panache.withTransaction(() -> insertGroup(despesas))
+            .subscribe().with(
+                ignored -> {
+                    committed(batch);
+                    batch.forEach(Pending::complete);
+                },
+                failure -> {
+                    if (batch.size() == 1) {
+                        batch.get(0).fail(failure);
+                        return;
+                    }
+                    Log.warnf(failure, "Group commit de %d despesas falhou, gravando individualmente", batch.size());
+                    retryIndividually(batch);
+                });
+    }
+
+    private void retryIndividually(List<Pending> batch) {
+        Uni<Void> chain = Uni.createFrom().voidItem();
+        for (Pending pending : batch) {
+            chain = chain.call(() -> {
+                // Entidade nova, para não reaproveitar o id atribuído na transação desfeita
+                Despesa copy = new Despesa(pending.despesa().getIdUser(), pending.despesa().getAmountCents(),
+                    Despesa.operations.valueOf(pending.despesa().getOperation()), pending.despesa().getTag(),
+                    pending.despesa().getDate());
+                return Panache.withTransaction(() -> insertGroup(List.of(copy)))
+                    .invoke(() -> {
+                        pending.committed().accept(copy.getIdUser(), copy.getChangeSeq(), List.of(copy.snapshot()));
+                        pending.complete(copy);
+                    })
+                    .onFailure().invoke(pending::fail)
+                    .onFailure().recoverWithNull()
+                    .replaceWithVoid();
+            });
+        }
+        chain.subscribe().with(ignored -> {}, failure -> Log.error("Falha inesperada no group commit", failure));
+    }
+
+    // Uma chamada por usuário com todas as linhas dele, antes de liberar qualquer chamador
+    private static void committed(List<Pending> batch) {
+        Map<Long, List<Pending>> byUser = new TreeMap<>();
+        for (Pending pending : batch) {
+            byUser.computeIfAbsent(pending.despesa().getIdUser(), id -> new ArrayList<>()).add(pending);
+        }
+        byUser.forEach((userId, pendings) -> pendings.get(0).committed().accept(userId,
+            pendings.get(0).despesa().getChangeSeq(),
+            pendings.stream().map(pending -> pending.despesa().snapshot()).toList()));
+    }
+
+    // Mesmo caminho do batch: uma mudança por usuário, persistAll e agregados agrupados
+    private Uni<Void> insertGroup(List<Despesa> despesas) {
+        // Usuários em ordem crescente: as linhas de versão são travadas sempre na mesma ordem
+        Map<Long, List<Despesa>> byUser = new TreeMap<>();
+        for (Despesa despesa : despesas) {
+            byUser.computeIfAbsent(despesa.getIdUser(), id -> new ArrayList<>()).add(despesa);
+        }
+
+        Uni<Void> versions = Uni.createFrom().voidItem();
+        for (Map.Entry<Long, List<Despesa>> entry : byUser.entrySet()) {
+            versions = versions.call(() -> aggregates.nextChange(entry.getKey())
+                .invoke(seq -> entry.getValue().forEach(despesa -> despesa.setChangeSeq(seq))));
+        }
+        return versions
+            .chain(() -> Panache.getSession())
+            .chain(session -> session.persistAll(despesas.toArray()).chain(session::flush))
+            .chain(() -> {
+                Uni<Void> chain = Uni.createFrom().voidItem();
+                for (Map.Entry<Long, List<Despesa>> entry : byUser.entrySet()) {
+                    List<DespesaSnapshot> created = entry.getValue().stream().map(Despesa::snapshot).toList();
+                    chain = chain.call(() -> aggregates.applyCreated(entry.getKey(), created));
+                }
+                return chain;
+            });
+    }
+
+    private record Pending(Despesa despesa, Committed committed, Context context, CompletableFuture<Despesa> result) {
+
+        void complete() {
+            complete(despesa);
+        }
+
+        // A resposta segue no contexto Vert.x da própria requisição
+        void complete(Despesa saved) {
+            context.runOnContext(v -> result.complete(saved));
+        }
+
+        void fail(Throwable failure) {
+            context.runOnContext(v -> result.completeExceptionally(failure));
+        }
+    }
+}
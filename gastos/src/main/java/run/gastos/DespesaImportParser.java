@@ -0,0 +1,336 @@
+package run.gastos;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+import run.gastos.model.Money;
+
+/**
+ * Leitura incremental de extratos (CSV ou OFX): cada {@link #next()} consome só o necessário
+ * para a próxima linha/transação, então a memória não depende do tamanho do arquivo.
+ * Linhas e valores têm tamanho máximo; o excesso é descartado e vira erro da linha.
+ */
+public abstract class DespesaImportParser {
+
+    public enum Format {
+        CSV, OFX
+    }
+
+    /**
+     * Linha convertida ({@code error} nulo) ou com erro. {@code row} é a linha do CSV
+     * ou a posição da transação no OFX, começando em 1.
+     */
+    public record ImportRow(int row, LocalDate date, long amountCents, String operation, String tag, String error) {
+
+        static ImportRow failed(int row, String error) {
+            return new ImportRow(row, null, 0, null, null, error);
+        }
+    }
+
+    static final int MAX_LINE = 8192;
+
+    protected final Reader reader;
+
+    protected DespesaImportParser(Reader reader) {
+        this.reader = reader;
+    }
+
+    public static DespesaImportParser of(Format format, Reader reader) {
+        return format == Format.OFX ? new Ofx(reader) : new Csv(reader);
+    }
+
+    /**
+     * @return a próxima linha, ou nulo no fim do arquivo
+     */
+    public abstract ImportRow next() throws IOException;
+
+    // Valor com sinal: operação explícita vence; sem ela, negativo é débito
+    static ImportRow toRow(int row, LocalDate date, String amount, String operation, String tag) {
+        if (date == null) {
+            return ImportRow.failed(row, "Data ausente ou inválida");
+        }
+        BigDecimal value;
+        try {
+            value = parseAmount(amount);
+        } catch (NumberFormatException | ArithmeticException e) {
+            return ImportRow.failed(row, "Valor inválido: " + amount);
+        }
+        String op = operation == null || operation.isBlank() ? (value.signum() < 0 ? "D" : "C") : operation.trim();
+        try {
+            return new ImportRow(row, date, Money.toCents(value.abs()), op, tag, null);
+        } catch (ArithmeticException e) {
+            return ImportRow.failed(row, "Valor com frações de centavo: " + amount);
+        }
+    }
+
+    // Aceita 1234.56, 1234,56 e 1.234,56
+    static BigDecimal parseAmount(String amount) {
+        if (amount == null || amount.isBlank()) {
+            throw new NumberFormatException("vazio");
+        }
+        String value = amount.trim().replace(" ", "");
+        if (value.contains(",")) {
+            value = value.replace(".", "").replace(',', '.');
+        }
+        return new BigDecimal(value);
+    }
+
+    /**
+     * CSV com cabeçalho. Separador "," ou ";" (detectado no cabeçalho) e campos entre aspas
+     * na mesma linha. Colunas reconhecidas: date/data, amount/valor, amountCents,
+     * operation/tipo (C/D) e tag/categoria; as demais são ignoradas.
+     */
+    static final class Csv extends DespesaImportParser {
+
+        private static final DateTimeFormatter BR_DATE = DateTimeFormatter.ofPattern("dd/MM/yyyy");
+
+        private final StringBuilder line = new StringBuilder();
+        private int lineNumber;
+        private char separator;
+        private Map<String, Integer> columns;
+
+        Csv(Reader reader) {
+            super(reader);
+        }
+
+        @Override
+        public ImportRow next() throws IOException {
+            while (true) {
+                Boolean complete = readLine();
+                if (complete == null) {
+                    return null;
+                }
+                lineNumber++;
+                if (!complete) {
+                    return ImportRow.failed(lineNumber, "Linha maior que " + MAX_LINE + " caracteres");
+                }
+                if (line.toString().isBlank()) {
+                    continue;
+                }
+                if (columns == null) {
+                    readHeader();
+                    if (!columns.containsKey("date") || !(columns.containsKey("amount") || columns.containsKey("amountcents"))) {
+                        throw new IllegalArgumentException("Cabeçalho do CSV precisa das colunas date/data e amount/valor");
+                    }
+                    continue;
+                }
+                List<String> fields = split(line, separator);
+                String date = field(fields, "date");
+                String operation = field(fields, "operation");
+                String tag = field(fields, "tag");
+                String cents = field(fields, "amountcents");
+                String amount = cents != null && !cents.isBlank() ? centsAsDecimal(cents) : field(fields, "amount");
+                return toRow(lineNumber, parseDate(date), amount, operation, tag);
+            }
+        }
+
+        /**
+         * Lê uma linha para {@code line}. Retorna nulo no fim do arquivo e false se a linha
+         * passou do limite (o restante dela é descartado).
+         */
+        private Boolean readLine() throws IOException {
+            line.setLength(0);
+            boolean overflow = false;
+            int c;
+            boolean any = false;
+            while ((c = reader.read()) != -1) {
+                any = true;
+                if (c == '\n') {
+                    break;
+                }
+                if (c == '\r') {
+                    continue;
+                }
+                if (line.length() < MAX_LINE) {
+                    line.append((char) c);
+                } else {
+                    overflow = true;
+                }
+            }
+            if (!any) {
+                return null;
+            }
+            return !overflow;
+        }
+
+        private void readHeader() {
+            String header = line.toString();
+            // BOM de arquivos salvos pelo Excel
+            if (lineNumber == 1 && !header.isEmpty() && header.charAt(0) == '\uFEFF') {
+                header = header.substring(1);
+            }
+            separator = header.indexOf(';') >= 0 ? ';' : ',';
+            columns = new HashMap<>();
+            List<String> names = split(header, separator);
+            for (int i = 0; i < names.size(); i++) {
+                String name = names.get(i).trim().toLowerCase(Locale.ROOT);
+                String key = switch (name) {
+                    case "date", "data" -> "date";
+                    case "amount", "valor" -> "amount";
+                    case "amountcents" -> "amountcents";
+                    case "operation", "tipo" -> "operation";
+                    case "tag", "categoria" -> "tag";
+                    default -> null;
+                };
+                if (key != null) {
+                    columns.putIfAbsent(key, i);
+                }
+            }
+        }
+
+        private String field(List<String> fields, String column) {
+            Integer index = columns.get(column);
+            if (index == null || index >= fields.size()) {
+                return null;
+            }
+            String value = fields.get(index).trim();
+            return value.isEmpty() ? null : value;
+        }
+
+        private static String centsAsDecimal(String cents) {
+            try {
+                return Money.toDecimal(Long.parseLong(cents.trim())).toPlainString();
+            } catch (NumberFormatException e) {
+                return cents;
+            }
+        }
+
+        private static LocalDate parseDate(String date) {
+            if (date == null) {
+                return null;
+            }
+            try {
+                return date.indexOf('/') > 0 ? LocalDate.parse(date, BR_DATE) : LocalDate.parse(date);
+            } catch (DateTimeParseException e) {
+                return null;
+            }
+        }
+
+        // Divide respeitando aspas duplas ("" dentro de aspas é uma aspa literal)
+        private static List<String> split(CharSequence line, char separator) {
+            List<String> fields = new ArrayList<>();
+            StringBuilder current = new StringBuilder();
+            boolean quoted = false;
+            for (int i = 0; i < line.length(); i++) {
+                char c = line.charAt(i);
+                if (quoted) {
+                    if (c == '"' && i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                        current.append('"');
+                        i++;
+                    } else if (c == '"') {
+                        quoted = false;
+                    } else {
+                        current.append(c);
+                    }
+                } else if (c == '"') {
+                    quoted = true;
+                } else if (c == separator) {
+                    fields.add(current.toString());
+                    current.setLength(0);
+                } else {
+                    current.append(c);
+                }
+            }
+            fields.add(current.toString());
+            return fields;
+        }
+    }
+
+    /**
+     * OFX 1.x (SGML, folhas sem tag de fechamento) e 2.x (XML). O arquivo é lido como uma
+     * sequência de tags e textos; cada bloco STMTTRN vira uma linha com DTPOSTED e TRNAMT.
+     * Extratos não trazem categoria, então a tag fica com o padrão ("Outros").
+     */
+    static final class Ofx extends DespesaImportParser {
+
+        private final StringBuilder token = new StringBuilder();
+        private int transaction;
+        private int pending = -2;
+
+        Ofx(Reader reader) {
+            super(reader);
+        }
+
+        @Override
+        public ImportRow next() throws IOException {
+            String date = null;
+            String amount = null;
+            boolean inside = false;
+            String tag;
+            while ((tag = nextTag()) != null) {
+                switch (tag) {
+                    case "STMTTRN" -> {
+                        inside = true;
+                        date = null;
+                        amount = null;
+                    }
+                    case "/STMTTRN" -> {
+                        if (inside) {
+                            transaction++;
+                            return toRow(transaction, parseDate(date), amount, null, null);
+                        }
+                    }
+                    case "DTPOSTED" -> date = inside ? text() : date;
+                    case "TRNAMT" -> amount = inside ? text() : amount;
+                    default -> {
+                        // Demais campos (FITID, MEMO, NAME...) não são usados
+                    }
+                }
+            }
+            return null;
+        }
+
+        // Próxima tag (sem < >, em maiúsculas), pulando o texto antes dela
+        private String nextTag() throws IOException {
+            int c = pending != -2 ? pending : reader.read();
+            pending = -2;
+            while (c != -1 && c != '<') {
+                c = reader.read();
+            }
+            if (c == -1) {
+                return null;
+            }
+            token.setLength(0);
+            while ((c = reader.read()) != -1 && c != '>') {
+                if (token.length() < MAX_LINE) {
+                    token.append((char) c);
+                }
+            }
+            return token.toString().trim().toUpperCase(Locale.ROOT);
+        }
+
+        // Texto até a próxima tag, que fica guardada para o nextTag seguinte
+        private String text() throws IOException {
+            token.setLength(0);
+            int c;
+            while ((c = reader.read()) != -1 && c != '<') {
+                if (token.length() < MAX_LINE) {
+                    token.append((char) c);
+                }
+            }
+            pending = c;
+            return token.toString().trim();
+        }
+
+        // DTPOSTED: yyyyMMdd[HHmmss[.XXX]][[-3:BRT]]; só a data importa
+        private static LocalDate parseDate(String date) {
+            if (date == null || date.length() < 8) {
+                return null;
+            }
+            try {
+                return LocalDate.parse(date.substring(0, 8), DateTimeFormatter.BASIC_ISO_DATE);
+            } catch (DateTimeParseException e) {
+                return null;
+            }
+        }
+    }
+}
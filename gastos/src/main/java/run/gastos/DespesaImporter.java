@@ -0,0 +1,137 @@
+package run.gastos;
+
+import java.io.BufferedReader;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Function;
+
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+
+import io.quarkus.logging.Log;
+import io.quarkus.vertx.VertxContextSupport;
+import io.smallrye.mutiny.Multi;
+import io.smallrye.mutiny.Uni;
+import io.smallrye.mutiny.infrastructure.Infrastructure;
+import io.smallrye.mutiny.subscription.MultiEmitter;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.ws.rs.WebApplicationException;
+import run.gastos.DespesaImportParser.ImportRow;
+import run.gastos.model.Despesa;
+import run.gastos.model.ImportEvent;
+
+/**
+ * Importação de extratos em streaming. O arquivo é lido numa thread de worker e as despesas
+ * válidas vão para o banco em lotes de {@code gastos.import.batch-size}; a leitura só continua
+ * depois do commit do lote, então um banco lento segura o upload (backpressure até o TCP) e a
+ * memória fica limitada a um lote, qualquer que seja o tamanho do arquivo.
+ */
+@ApplicationScoped
+public class DespesaImporter {
+
+    @ConfigProperty(name = "gastos.import.batch-size", defaultValue = "500")
+    int batchSize;
+
+    @ConfigProperty(name = "gastos.import.max-errors", defaultValue = "1000")
+    int maxErrors;
+
+    /**
+     * @param mapper converte uma linha válida em Despesa (WebApplicationException = erro da linha)
+     * @param writer grava um lote numa transação, já com os efeitos pós-commit
+     */
+    public Multi<ImportEvent> run(InputStream body, DespesaImportParser.Format format,
+                                  Function<ImportRow, Despesa> mapper, Function<List<Despesa>, Uni<Void>> writer) {
+        return Multi.createFrom().<ImportEvent>emitter(emitter -> new Run(emitter, mapper, writer).read(body, format))
+            .runSubscriptionOn(Infrastructure.getDefaultWorkerPool());
+    }
+
+    private final class Run {
+        private final MultiEmitter<? super ImportEvent> emitter;
+        private final Function<ImportRow, Despesa> mapper;
+        private final Function<List<Despesa>, Uni<Void>> writer;
+        private final List<Despesa> batch = new ArrayList<>(batchSize);
+        private long imported;
+        private long failed;
+
+        Run(MultiEmitter<? super ImportEvent> emitter, Function<ImportRow, Despesa> mapper,
+            Function<List<Despesa>, Uni<Void>> writer) {
+            this.emitter = emitter;
+            this.mapper = mapper;
+            this.writer = writer;
+        }
+
+        void read(InputStream body, DespesaImportParser.Format format) {
+            try (Reader reader = new BufferedReader(new InputStreamReader(body, StandardCharsets.UTF_8))) {
+                DespesaImportParser parser = DespesaImportParser.of(format, reader);
+                ImportRow row;
+                // Cliente desconectado: para de ler; lotes já gravados permanecem
+                while (!emitter.isCancelled() && (row = parser.next()) != null) {
+                    accept(row);
+                    if (batch.size() >= batchSize) {
+                        flush();
+                    }
+                }
+                if (!emitter.isCancelled()) {
+                    flush();
+                }
+                emitter.emit(ImportEvent.done(imported, failed));
+                emitter.complete();
+            } catch (IllegalArgumentException e) {
+                // Arquivo sem o formato esperado (ex.: cabeçalho do CSV)
+                emitter.emit(ImportEvent.error(null, e.getMessage(), imported, failed));
+                emitter.emit(ImportEvent.done(imported, failed));
+                emitter.complete();
+            } catch (BatchFailedException e) {
+                emitter.emit(ImportEvent.error(null, e.getMessage(), imported, failed));
+                emitter.emit(ImportEvent.done(imported, failed));
+                emitter.complete();
+            } catch (Exception e) {
+                emitter.fail(e);
+            }
+        }
+
+        private void accept(ImportRow row) {
+            String error = row.error();
+            if (error == null) {
+                try {
+                    batch.add(mapper.apply(row));
+                    return;
+                } catch (WebApplicationException e) {
+                    error = e.getMessage();
+                }
+            }
+            failed++;
+            if (failed <= maxErrors) {
+                emitter.emit(ImportEvent.error(row.row(), error, imported, failed));
+            }
+        }
+
+        private void flush() {
+            if (batch.isEmpty()) {
+                return;
+            }
+            List<Despesa> rows = List.copyOf(batch);
+            batch.clear();
+            try {
+                // Bloqueia esta thread de worker até o commit: é aqui que a leitura espera o banco
+                VertxContextSupport.subscribeAndAwait(() -> writer.apply(rows));
+            } catch (Throwable e) {
+                Log.warnf(e, "Falha ao gravar lote de importação com %d despesas", rows.size());
+                failed += rows.size();
+                throw new BatchFailedException("Falha ao gravar lote de " + rows.size()
+                    + " despesas; importação interrompida. Linhas anteriores já foram gravadas");
+            }
+            imported += rows.size();
+            emitter.emit(ImportEvent.progress(imported, failed));
+        }
+    }
+
+    private static final class BatchFailedException extends RuntimeException {
+        BatchFailedException(String message) {
+            super(message);
+        }
+    }
+}
@@ -1,28 +1,62 @@
 package run.gastos;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.math.BigDecimal;
 import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Iterator;
 import java.util.List;
+import java.util.function.LongFunction;
 
+import org.eclipse.microprofile.config.inject.ConfigProperty;
 import org.eclipse.microprofile.jwt.JsonWebToken;
+import org.jboss.resteasy.reactive.RestMediaType;
+import org.jboss.resteasy.reactive.RestStreamElementType;
 
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import io.quarkus.hibernate.reactive.panache.Panache;
 import io.quarkus.hibernate.reactive.panache.common.WithTransaction;
 import io.quarkus.security.identity.SecurityIdentity;
+import io.smallrye.common.annotation.Blocking;
 import io.smallrye.common.constraint.NotNull;
+import io.smallrye.mutiny.Multi;
 import io.smallrye.mutiny.Uni;
 import jakarta.annotation.security.RolesAllowed;
 import jakarta.inject.Inject;
+import jakarta.ws.rs.Consumes;
 import jakarta.ws.rs.DELETE;
+import jakarta.ws.rs.DefaultValue;
 import jakarta.ws.rs.GET;
+import jakarta.ws.rs.HeaderParam;
 import jakarta.ws.rs.PATCH;
 import jakarta.ws.rs.POST;
 import jakarta.ws.rs.Path;
 import jakarta.ws.rs.Produces;
 import jakarta.ws.rs.QueryParam;
 import jakarta.ws.rs.WebApplicationException;
+import jakarta.ws.rs.core.Context;
+import jakarta.ws.rs.core.EntityTag;
 import jakarta.ws.rs.core.MediaType;
+import jakarta.ws.rs.core.Request;
 import jakarta.ws.rs.core.Response;
+import run.gastos.model.BalanceCheckpoint;
+import run.gastos.model.BalanceUpdate;
 import run.gastos.model.Despesa;
+import run.gastos.model.DespesaChanges;
+import run.gastos.model.DespesaFilter;
+import run.gastos.model.DespesaPage;
+import run.gastos.model.DespesaSnapshot;
+import run.gastos.model.DespesaTombstone;
+import run.gastos.model.ImportEvent;
+import run.gastos.model.Money;
+import run.gastos.model.SpendingSeries;
 import run.gastos.model.TagSum;
+import run.gastos.model.UserBalance;
+import run.gastos.model.UserDataVersion;
 
 @Path("/gastos")
 public class GastosResource {
@@ -33,6 +67,48 @@ public class GastosResource {
     @Inject
     JsonWebToken jwt;
 
+    @Inject
+    CurrentUser currentUser;
+
+    @ConfigProperty(name = "gastos.despesas.page.default-size", defaultValue = "50")
+    int defaultPageSize;
+
+    @ConfigProperty(name = "gastos.despesas.page.max-size", defaultValue = "500")
+    int maxPageSize;
+
+    @ConfigProperty(name = "gastos.despesas.batch.max-size", defaultValue = "5000")
+    int maxBatchSize;
+
+    @ConfigProperty(name = "gastos.despesas.changes.max-size", defaultValue = "5000")
+    int maxChanges;
+
+    @ConfigProperty(name = "gastos.series.max-buckets", defaultValue = "400")
+    int maxSeriesBuckets;
+
+    @ConfigProperty(name = "gastos.money.accept-decimal", defaultValue = "true")
+    boolean acceptDecimal;
+
+    @Inject
+    ObjectMapper objectMapper;
+
+    @Inject
+    DespesaAggregates aggregates;
+
+    @Inject
+    AggregateCache aggregateCache;
+
+    @Inject
+    BalanceEvents balanceEvents;
+
+    @Inject
+    DespesaGroupCommit groupCommit;
+
+    @Inject
+    AnalyticsLedger ledger;
+
+    @Inject
+    DespesaImporter importer;
+
     @GET
     @Path("/test-auth")
     @Produces(MediaType.APPLICATION_JSON)
@@ -50,127 +126,286 @@ public class GastosResource {
     @Path("/despesa/create")
     @Produces(MediaType.APPLICATION_JSON)
     @RolesAllowed({"user"})
-    @WithTransaction
     public Uni<Despesa> createDespesa(
-        @QueryParam("amount") Double amount,
+        @QueryParam("amountCents") Long amountCents,
+        // Compatibilidade: valor decimal (ex.: 10.50), aceito enquanto gastos.money.accept-decimal=true
+        @QueryParam("amount") BigDecimal amount,
         @QueryParam("operation") String operation,
         @QueryParam("tag") String tag,
         @QueryParam("date") LocalDate date
         ) {
-        // Validação do token JWT se o token está nulo
-        if (securityIdentity == null || securityIdentity.isAnonymous() || jwt == null) {
-            return Uni.createFrom().failure(new WebApplicationException("Token Vazio", Response.Status.UNAUTHORIZED));
-        }
+        Long tokenId = currentUser.id();
 
-        //Validar se o campo id existe no token
-        Object idClaim = jwt.getClaim("id");
-        if (idClaim == null) {
-            return Uni.createFrom().failure(new WebApplicationException("Token inválido", Response.Status.UNAUTHORIZED));
+        Despesa despesa;
+        try {
+            despesa = buildDespesa(tokenId, cents(amountCents, amount), operation, tag, date);
+        } catch (WebApplicationException e) {
+            return Uni.createFrom().failure(e);
+        }
+        if (groupCommit.enabled()) {
+            // O group commit aplica os efeitos pós-commit uma vez por usuário, com todas as linhas do grupo
+            return groupCommit.submit(despesa,
+                (userId, version, created) -> committed(userId, version, List.of(), created));
         }
+        // Cache invalidado só depois do commit, para não ser repovoado com o valor antigo
+        return Panache.withTransaction(() -> aggregates.nextChange(tokenId)
+                .chain(seq -> {
+                    despesa.setChangeSeq(seq);
+                    return despesa.<Despesa>persistAndFlush();
+                })
+                .call(saved -> aggregates.apply(null, saved.snapshot())))
+            .invoke(saved -> committed(saved.getIdUser(), saved.getChangeSeq(), List.of(), List.of(saved.snapshot())));
+    }
 
-        // Criação do id Long baseado no token JWT (forma simples e resiliente)
-        Long tokenId;
-        try {
-            tokenId = Long.parseLong(idClaim.toString());
-        } catch (Exception e) {
-            return Uni.createFrom().failure(new WebApplicationException("Token inválido", Response.Status.BAD_REQUEST));
+    @POST
+    @Path("/despesa/batch")
+    @Consumes(MediaType.APPLICATION_JSON)
+    @Produces(MediaType.APPLICATION_JSON)
+    @RolesAllowed({"user"})
+    public Uni<BatchResult> createDespesasBatch(String body) {
+        // Lido item a item: acima de gastos.despesas.batch.max-size o lote é recusado sem desserializar o resto
+        List<CreateDespesaRequest> items = new ArrayList<>();
+        try (JsonParser parser = objectMapper.createParser(body == null ? "" : body)) {
+            if (parser.nextToken() != JsonToken.START_ARRAY) {
+                return Uni.createFrom().failure(new WebApplicationException("Envie uma lista de despesas", Response.Status.BAD_REQUEST));
+            }
+            JsonToken token;
+            while ((token = parser.nextToken()) != JsonToken.END_ARRAY) {
+                if (token == null) {
+                    return Uni.createFrom().failure(new WebApplicationException("JSON inválido", Response.Status.BAD_REQUEST));
+                }
+                if (items.size() == maxBatchSize) {
+                    return Uni.createFrom().failure(batchTooLarge());
+                }
+                items.add(parser.readValueAs(CreateDespesaRequest.class));
+            }
+        } catch (IOException e) {
+            return Uni.createFrom().failure(new WebApplicationException("JSON inválido", Response.Status.BAD_REQUEST));
         }
+        return insertBatch(items);
+    }
 
-        // Garantir que amount seja Double para compatibilidade com Despesa
-        if (amount == null) {
-            return Uni.createFrom().failure(new WebApplicationException("Campo 'amount' é obrigatório", Response.Status.BAD_REQUEST));
+    @POST
+    @Path("/despesa/batch")
+    @Consumes(RestMediaType.APPLICATION_NDJSON)
+    @Produces(MediaType.APPLICATION_JSON)
+    @RolesAllowed({"user"})
+    public Uni<BatchResult> createDespesasBatchNdjson(String body) {
+        // Uma despesa por linha; linhas com JSON inválido viram erro do próprio item
+        List<CreateDespesaRequest> items = new ArrayList<>();
+        if (body != null) {
+            Iterator<String> lines = body.lines().iterator();
+            while (lines.hasNext()) {
+                String line = lines.next();
+                if (line.isBlank()) {
+                    continue;
+                }
+                if (items.size() == maxBatchSize) {
+                    return Uni.createFrom().failure(batchTooLarge());
+                }
+                try {
+                    items.add(objectMapper.readValue(line, CreateDespesaRequest.class));
+                } catch (Exception e) {
+                    items.add(null);
+                }
+            }
         }
+        return insertBatch(items);
+    }
 
-        if (operation == null || operation.trim().isEmpty()) {
-            return Uni.createFrom().failure(new WebApplicationException("Campo 'operation' é obrigatório", Response.Status.BAD_REQUEST));
+    /**
+     * Importa um extrato CSV ou OFX em streaming. O formato vem de {@code format} ou do
+     * Content-Type. A resposta é NDJSON: erros por linha, progresso a cada lote gravado e um
+     * resumo final. Lotes já gravados permanecem se a importação for interrompida.
+     */
+    @POST
+    @Path("/despesas/import")
+    @Consumes({"text/csv", "application/x-ofx", MediaType.TEXT_PLAIN, MediaType.APPLICATION_OCTET_STREAM})
+    @Produces(RestMediaType.APPLICATION_NDJSON)
+    @RestStreamElementType(MediaType.APPLICATION_JSON)
+    @RolesAllowed({"user"})
+    @Blocking
+    public Multi<ImportEvent> importDespesas(
+            @QueryParam("format") String format,
+            @HeaderParam("Content-Type") String contentType,
+            InputStream body) {
+        Long tokenId = currentUser.id();
+
+        DespesaImportParser.Format parsed;
+        if (format != null && !format.trim().isEmpty()) {
+            try {
+                parsed = DespesaImportParser.Format.valueOf(format.trim().toUpperCase());
+            } catch (IllegalArgumentException e) {
+                return Multi.createFrom().failure(
+                    new WebApplicationException("Campo 'format' inválido (use csv ou ofx)", Response.Status.BAD_REQUEST));
+            }
+        } else {
+            parsed = contentType != null && contentType.toLowerCase().contains("ofx")
+                ? DespesaImportParser.Format.OFX : DespesaImportParser.Format.CSV;
         }
 
-        Despesa.operations op;
+        return importer.run(body, parsed,
+            row -> buildDespesa(tokenId, row.amountCents(), row.operation(), row.tag(), row.date()),
+            batch -> persistBatch(tokenId, batch));
+    }
+
+    @GET
+    @Path("/despesas/list")
+    @Produces(MediaType.APPLICATION_JSON)
+    @RolesAllowed({"user"})
+    public Uni<Response> getDespesas(
+            @QueryParam("operation") String operation,
+            @QueryParam("tag") String tag,
+            @QueryParam("dateStart") String dateStart,
+            @QueryParam("dateEnd") String dateEnd,
+            @Context Request request) {
+        Long tokenId = currentUser.id();
+
+        DespesaFilter filter;
         try {
-            op = Despesa.operations.valueOf(operation.trim().toUpperCase());
-        } catch (IllegalArgumentException e) {
-            return Uni.createFrom().failure(new WebApplicationException("Campo 'operation' inválido (use 'D' ou 'C')", Response.Status.BAD_REQUEST));
+            filter = parseFilter(operation, tag, dateStart, dateEnd);
+        } catch (WebApplicationException e) {
+            return Uni.createFrom().failure(e);
         }
 
-        if (date == null) {
-            return Uni.createFrom().failure(new WebApplicationException("Campo 'date' é obrigatório", Response.Status.BAD_REQUEST));
-        }
-        Despesa despesa = new Despesa();
-        despesa.setIdUser(tokenId);
-        despesa.setAmount(amount);
-        despesa.setOperation(op);
-        despesa.setDate(date);
-        despesa.setTag(tag == null || tag.trim().isEmpty() ? "Outros" : tag);
-        return despesa.persistAndFlush();
+        return conditional(tokenId, request,
+            version -> Panache.withTransaction(() -> Despesa.getDespesasByFilters(tokenId, filter)));
     }
 
     @GET
-    @Path("/despesas/list")
+    @Path("/despesas/page")
     @Produces(MediaType.APPLICATION_JSON)
     @RolesAllowed({"user"})
     @WithTransaction
-    public Uni<List<Despesa>> getDespesas(
+    public Uni<DespesaPage> getDespesasPage(
             @QueryParam("operation") String operation,
             @QueryParam("tag") String tag,
             @QueryParam("dateStart") String dateStart,
-            @QueryParam("dateEnd") String dateEnd) {
-         // Validação do token JWT se o token está nulo
-        if (securityIdentity == null || securityIdentity.isAnonymous() || jwt == null) {
-            return Uni.createFrom().failure(new WebApplicationException("Token Vazio", Response.Status.UNAUTHORIZED));
+            @QueryParam("dateEnd") String dateEnd,
+            @QueryParam("cursor") String cursor,
+            @QueryParam("limit") Integer limit) {
+        Long tokenId = currentUser.id();
+        DespesaFilter filter;
+        LocalDate cursorDate;
+        Long cursorId;
+        try {
+            filter = parseFilter(operation, tag, dateStart, dateEnd);
+            cursorDate = parseCursorDate(cursor);
+            cursorId = cursorDate == null ? null : DespesaPage.cursorId(cursor);
+        } catch (WebApplicationException e) {
+            return Uni.createFrom().failure(e);
         }
 
-        //Validar se o campo id existe no token
-        Object idClaim = jwt.getClaim("id");
-        if (idClaim == null) {
-            return Uni.createFrom().failure(new WebApplicationException("Token inválido", Response.Status.UNAUTHORIZED));
-        }
-        // Criação do id Long baseado no token JWT (forma simples e resiliente)
-        Long tokenId;
+        return Despesa.getDespesasPage(tokenId, filter, cursorDate, cursorId, pageSize(limit));
+    }
+
+    @GET
+    @Path("/despesas/stream")
+    @Produces(RestMediaType.APPLICATION_NDJSON)
+    @RestStreamElementType(MediaType.APPLICATION_JSON)
+    @RolesAllowed({"user"})
+    public Multi<Despesa> streamDespesas(
+            @QueryParam("operation") String operation,
+            @QueryParam("tag") String tag,
+            @QueryParam("dateStart") String dateStart,
+            @QueryParam("dateEnd") String dateEnd) {
+        Long tokenId = currentUser.id();
+        DespesaFilter filter;
         try {
-            tokenId = Long.parseLong(idClaim.toString());
-        } catch (Exception e) {
-            return Uni.createFrom().failure(new WebApplicationException("Token inválido", Response.Status.BAD_REQUEST));
+            filter = parseFilter(operation, tag, dateStart, dateEnd);
+        } catch (WebApplicationException e) {
+            return Multi.createFrom().failure(e);
         }
 
-        dateStart = (dateStart == null || dateStart.trim().isEmpty()) ? null : dateStart;
-        dateEnd = (dateEnd == null || dateEnd.trim().isEmpty()) ? null : dateEnd;
+        return Despesa.streamDespesasByFilters(tokenId, filter, maxPageSize);
+    }
 
-        return Despesa.getDespesasByFilters(tokenId, operation, tag, dateStart, dateEnd);
+    /**
+     * Sincronização incremental: devolve as despesas criadas/alteradas e os ids removidos depois
+     * de {@code since}, e o cursor para a próxima chamada. Sem {@code since} (ou 0), devolve tudo.
+     */
+    @GET
+    @Path("/despesas/changes")
+    @Produces(MediaType.APPLICATION_JSON)
+    @RolesAllowed({"user"})
+    public Uni<DespesaChanges> getChanges(@QueryParam("since") Long since) {
+        Long tokenId = currentUser.id();
+        if (since != null && since < 0) {
+            return Uni.createFrom().failure(new WebApplicationException("Parâmetro 'since' inválido", Response.Status.BAD_REQUEST));
+        }
+
+        return Panache.withSession(() -> DespesaChanges.since(tokenId, since == null ? 0 : since, maxChanges));
     }
 
     @PATCH
     @Path("/despesa/update")
     @Produces(MediaType.APPLICATION_JSON)
     @RolesAllowed({"user"})
-    @WithTransaction
     public Uni<Despesa> updateDespesa(
             @QueryParam("id") Long id,
-            @QueryParam("amount") Double amount,
+            @QueryParam("amountCents") Long amountCents,
+            @QueryParam("amount") BigDecimal amount,
             @QueryParam("operation") String operation,
             @QueryParam("tag") String tag,
-            @QueryParam("date") LocalDate date) {
-        return Despesa.<Despesa>findById(id)
-            .onItem().ifNotNull()
-            .invoke(item -> {
-                if (amount != null) {
-                    item.setAmount(amount);
+            @QueryParam("date") LocalDate date,
+            // changeSeq lido pelo cliente; se informado e a despesa tiver mudado, responde 409
+            @QueryParam("version") Long version) {
+        Long tokenId = currentUser.id();
+
+        Despesa.operations op = null;
+        if (operation != null && !operation.trim().isEmpty()) {
+            try {
+                op = Despesa.operations.valueOf(operation.trim().toUpperCase());
+            } catch (IllegalArgumentException e) {
+                return Uni.createFrom().failure(
+                    new WebApplicationException("Campo 'operation' inválido (use 'D' ou 'C')", Response.Status.BAD_REQUEST));
+            }
+        }
+        Despesa.operations newOperation = op;
+        Long newCents;
+        try {
+            newCents = cents(amountCents, amount);
+        } catch (WebApplicationException e) {
+            return Uni.createFrom().failure(e);
+        }
+
+        // Estados antes/depois, preenchidos na transação e publicados depois do commit
+        List<DespesaSnapshot> touched = new ArrayList<>();
+        return Panache.withTransaction(() -> Despesa.findOwned(tokenId, id)
+            .onItem().ifNull().failWith(GastosResource::notFound)
+            .onItem().transformToUni(item -> {
+                Long readSeq = item.getChangeSeq();
+                if (version != null && !version.equals(readSeq)) {
+                    return Uni.createFrom().<Despesa>failure(conflict());
                 }
-                if (operation != null && !operation.trim().isEmpty()) {
-                    try {
-                        Despesa.operations op = Despesa.operations.valueOf(operation.trim().toUpperCase());
-                        item.setOperation(op);
-                    } catch (IllegalArgumentException e) {
-                        throw new WebApplicationException("Campo 'operation' inválido (use 'D' ou 'C')", Response.Status.BAD_REQUEST);
+                return aggregates.nextChange(tokenId).chain(seq -> {
+                    // Guarda o estado anterior para aplicar só a diferença nos agregados
+                    DespesaSnapshot before = item.snapshot();
+                    touched.add(before);
+                    item.setChangeSeq(seq);
+                    if (newCents != null) {
+                        item.setAmountCents(newCents);
                     }
-                }
-                if (tag != null && !tag.trim().isEmpty()) {
-                    item.setTag(tag);
-                }
-                if (date != null) {
-                    item.setDate(date);
-                }
-            })
-            .call(item -> item.persistAndFlush());
+                    if (newOperation != null) {
+                        item.setOperation(newOperation);
+                    }
+                    if (tag != null && !tag.trim().isEmpty()) {
+                        item.setTag(tag);
+                    }
+                    if (date != null) {
+                        item.setDate(date);
+                    }
+                    // item é somente leitura: a escrita é só o UPDATE condicional abaixo
+                    return Despesa.updateOwned(item, readSeq)
+                        .onItem().transformToUni(updated -> updated == 0
+                            ? Uni.createFrom().<Despesa>failure(conflict())
+                            : Uni.createFrom().item(item))
+                        .invoke(saved -> touched.add(saved.snapshot()))
+                        .call(saved -> aggregates.apply(before, saved.snapshot()));
+                });
+            }))
+            .invoke(saved ->
+                committed(saved.getIdUser(), saved.getChangeSeq(), List.of(touched.get(0)), List.of(touched.get(1))));
 
     }
 
@@ -178,83 +413,342 @@ public class GastosResource {
     @Path("/despesa/delete")
     @Produces(MediaType.APPLICATION_JSON)
     @RolesAllowed({"user"})
-    @WithTransaction
-    public Uni<Despesa> deleteDespesa(@QueryParam("id") Long id) {
-        return Despesa.<Despesa>findById(id)
-            .onItem().ifNotNull()
+    public Uni<Despesa> deleteDespesa(@QueryParam("id") Long id, @QueryParam("version") Long version) {
+        Long tokenId = currentUser.id();
+
+        return Panache.withTransaction(() -> Despesa.findOwned(tokenId, id)
+            .onItem().ifNull().failWith(GastosResource::notFound)
             .call(item -> {
-                return item.delete();
-            });
+                Long readSeq = item.getChangeSeq();
+                if (version != null && !version.equals(readSeq)) {
+                    return Uni.createFrom().failure(conflict());
+                }
+                return aggregates.nextChange(tokenId)
+                    .call(() -> Despesa.deleteOwned(tokenId, id, readSeq)
+                        .invoke(deleted -> {
+                            if (deleted == 0) {
+                                throw conflict();
+                            }
+                        }))
+                    // O tombstone deixa o delete visível para /despesas/changes
+                    .chain(seq -> {
+                        // A despesa devolvida leva o número da mudança que a removeu
+                        item.setChangeSeq(seq);
+                        return new DespesaTombstone(item.id, tokenId, seq).persist();
+                    })
+                    .call(() -> aggregates.apply(item.snapshot(), null));
+            }))
+            .invoke(item ->
+                committed(item.getIdUser(), item.getChangeSeq(), List.of(item.snapshot()), List.of()));
+    }
+
+    // Inexistente ou de outro usuário: as duas situações têm a mesma resposta
+    private static WebApplicationException notFound() {
+        return new WebApplicationException("Despesa não encontrada", Response.Status.NOT_FOUND);
+    }
+
+    // A despesa mudou (ou foi removida) entre a leitura do cliente/servidor e a escrita
+    private static WebApplicationException conflict() {
+        return new WebApplicationException("Despesa alterada por outra requisição; recarregue e tente de novo",
+            Response.Status.CONFLICT);
     }
 
     @GET
     @Path("/por-tags")
     @Produces(MediaType.APPLICATION_JSON)
     @RolesAllowed({"user"})
-    @WithTransaction
-    public Uni<List<TagSum>> getDebitByTags(
+    public Uni<Response> getDebitByTags(
         @QueryParam("tag") String tag,
         @QueryParam("dateStart") String dtStart,
-        @QueryParam("dateEnd") String dtEnd
+        @QueryParam("dateEnd") String dtEnd,
+        @Context Request request
     ) {
-        if (securityIdentity == null || securityIdentity.isAnonymous() || jwt == null) {
-            return Uni.createFrom().failure(new WebApplicationException("Token Vazio", Response.Status.UNAUTHORIZED));
+        Long tokenId = currentUser.id();
+
+        DespesaFilter filter;
+        try {
+            filter = parseFilter(null, null, dtStart, dtEnd);
+        } catch (WebApplicationException e) {
+            return Uni.createFrom().failure(e);
         }
 
-        //Validar se o campo id existe no token
-        Object idClaim = jwt.getClaim("id");
-        if (idClaim == null) {
-            return Uni.createFrom().failure(new WebApplicationException("Token inválido", Response.Status.UNAUTHORIZED));
+        if (ledger.enabled()) {
+            return conditional(tokenId, request,
+                version -> ledger.get(tokenId, version).map(l -> l.debitByTag(filter.dateStart(), filter.dateEnd())));
         }
+        // Sessão só é aberta em caso de miss no cache
+        return conditional(tokenId, request,
+            version -> aggregateCache.get(tokenId, "por-tags:" + filter.dateStart() + ":" + filter.dateEnd(),
+                () -> Panache.withSession(() -> TagSum.getTagsByUserId(tokenId, filter.dateStart(), filter.dateEnd()))));
 
-        // Criação do id Long baseado no token JWT (forma simples e resiliente)
-        Long tokenId;
+    }
+
+    @GET
+    @Path("/series")
+    @Produces(MediaType.APPLICATION_JSON)
+    @RolesAllowed({"user"})
+    public Uni<Response> getSeries(
+        @QueryParam("granularity") @DefaultValue("month") String granularity,
+        @QueryParam("dateStart") String dtStart,
+        @QueryParam("dateEnd") String dtEnd,
+        @QueryParam("byTag") @DefaultValue("false") boolean byTag,
+        @Context Request request
+    ) {
+        Long tokenId = currentUser.id();
+
+        SpendingSeries.Granularity unit;
+        DespesaFilter filter;
         try {
-            tokenId = Long.parseLong(idClaim.toString());
-        } catch (Exception e) {
-            return Uni.createFrom().failure(new WebApplicationException("Token inválido", Response.Status.BAD_REQUEST));
+            unit = SpendingSeries.Granularity.valueOf(granularity.trim().toUpperCase());
+        } catch (IllegalArgumentException e) {
+            return Uni.createFrom().failure(new WebApplicationException(
+                "Campo 'granularity' inválido (use day, week ou month)", Response.Status.BAD_REQUEST));
+        }
+        try {
+            filter = parseFilter(null, null, dtStart, dtEnd);
+        } catch (WebApplicationException e) {
+            return Uni.createFrom().failure(e);
+        }
+        if (filter.dateStart() == null || filter.dateEnd() == null || filter.dateStart().isAfter(filter.dateEnd())) {
+            return Uni.createFrom().failure(new WebApplicationException(
+                "Campos 'dateStart' e 'dateEnd' são obrigatórios e dateStart não pode ser posterior a dateEnd",
+                Response.Status.BAD_REQUEST));
+        }
+        // Limite de buckets: a resposta e o trabalho de montá-la ficam limitados
+        if (unit.bucketCount(filter.dateStart(), filter.dateEnd()) > maxSeriesBuckets) {
+            return Uni.createFrom().failure(new WebApplicationException(
+                "Intervalo excede " + maxSeriesBuckets + " buckets; aumente a granularidade ou reduza o período",
+                Response.Status.BAD_REQUEST));
         }
 
-        return TagSum.getTagsByUserId(tokenId, dtStart,  dtEnd);
-
+        return conditional(tokenId, request,
+            version -> aggregateCache.get(tokenId,
+                "series:" + unit + ":" + filter.dateStart() + ":" + filter.dateEnd() + ":" + byTag,
+                () -> Panache.withSession(() -> SpendingSeries.load(tokenId, unit, filter.dateStart(), filter.dateEnd(), byTag))));
     }
 
     @GET
     @Path("/saldo")
     @Produces(MediaType.APPLICATION_JSON)
     @RolesAllowed({"user"})
-    @WithTransaction
-    public Uni<Double> getSaldo() {
-        if (securityIdentity == null || securityIdentity.isAnonymous() || jwt == null) {
-            return Uni.createFrom().failure(new WebApplicationException("Token Vazio", Response.Status.UNAUTHORIZED));
+    public Uni<Response> getSaldo(
+        // Data (yyyy-MM-dd) para o saldo histórico ao fim do dia; ausente = saldo atual
+        @QueryParam("asOf") String asOf,
+        @Context Request request
+    ) {
+        Long tokenId = currentUser.id();
+
+        if (asOf != null && !asOf.trim().isEmpty()) {
+            LocalDate date;
+            try {
+                date = parseFilter(null, null, asOf, null).dateStart();
+            } catch (WebApplicationException e) {
+                return Uni.createFrom().failure(new WebApplicationException("Campo 'asOf' inválido (use yyyy-MM-dd)",
+                    Response.Status.BAD_REQUEST));
+            }
+            // Checkpoint mensal + meses ainda não consolidados + despesas do mês até o dia
+            return conditional(tokenId, request,
+                version -> aggregateCache.get(tokenId, "saldo:" + date,
+                        () -> Panache.withTransaction(() -> BalanceCheckpoint.saldoAsOf(tokenId, date)))
+                    .map(Money::toDecimal));
+        }
+        if (ledger.enabled()) {
+            return conditional(tokenId, request,
+                version -> ledger.get(tokenId, version).map(l -> Money.toDecimal(l.saldo())));
+        }
+        return conditional(tokenId, request,
+            version -> aggregateCache.get(tokenId, "saldo",
+                    () -> Panache.withTransaction(() -> UserBalance.findSaldo(tokenId)))
+                .map(Money::toDecimal));
+    }
+
+    /**
+     * GET condicional: o ETag forte é (usuário, versão dos dados). Se bate com o If-None-Match
+     * a resposta é 304 sem rodar a consulta nem serializar nada. A versão é lida antes dos dados,
+     * então uma escrita concorrente no máximo faz o cliente baixar de novo, nunca guardar dado velho.
+     */
+    private <T> Uni<Response> conditional(Long userId, Request request, LongFunction<Uni<T>> query) {
+        return aggregateCache.get(userId, "version", () -> Panache.withSession(() -> UserDataVersion.current(userId)))
+            .onItem().transformToUni(version -> {
+                EntityTag etag = new EntityTag(userId + "-" + version);
+                Response.ResponseBuilder notModified = request.evaluatePreconditions(etag);
+                if (notModified != null) {
+                    return Uni.createFrom().item(notModified.tag(etag).build());
+                }
+                return query.apply(version).onItem().transform(body -> Response.ok(body).tag(etag).build());
+            });
+    }
+
+    /**
+     * Stream SSE do saldo e dos totais por tag do usuário: um evento na conexão e um a cada
+     * escrita confirmada, além de heartbeats. Substitui o polling de /saldo.
+     */
+    @GET
+    @Path("/saldo/stream")
+    @Produces(MediaType.SERVER_SENT_EVENTS)
+    @RestStreamElementType(MediaType.APPLICATION_JSON)
+    @RolesAllowed({"user"})
+    public Multi<BalanceUpdate> streamSaldo() {
+        return balanceEvents.subscribe(currentUser.id());
+    }
+
+    // Efeitos de uma escrita que só podem acontecer depois do commit
+    private void committed(Long userId, long version, List<DespesaSnapshot> removed, List<DespesaSnapshot> added) {
+        aggregateCache.invalidateUser(userId);
+        ledger.committed(userId, version, removed, added);
+        List<DespesaSnapshot> touched = new ArrayList<>(removed);
+        touched.addAll(added);
+        balanceEvents.publish(userId, touched);
+    }
+
+    /**
+     * Valor da requisição em centavos. {@code amountCents} tem precedência; o decimal {@code amount}
+     * só é aceito em modo de compatibilidade e não pode ter frações de centavo. Nulo se nenhum veio.
+     */
+    private Long cents(Long amountCents, BigDecimal amount) {
+        if (amountCents != null || amount == null) {
+            return amountCents;
+        }
+        if (!acceptDecimal) {
+            throw new WebApplicationException("Campo 'amount' decimal desativado; use 'amountCents'", Response.Status.BAD_REQUEST);
+        }
+        try {
+            return Money.toCents(amount);
+        } catch (ArithmeticException e) {
+            throw new WebApplicationException("Campo 'amount' inválido (no máximo 2 casas decimais)", Response.Status.BAD_REQUEST);
+        }
+    }
+
+    // Regras de validação de uma nova despesa, compartilhadas pelo create e pelo batch
+    private static Despesa buildDespesa(Long tokenId, Long amountCents, String operation, String tag, LocalDate date) {
+        if (amountCents == null) {
+            throw new WebApplicationException("Campo 'amount' é obrigatório", Response.Status.BAD_REQUEST);
         }
 
-        //Validar se o campo id existe no token
-        Object idClaim = jwt.getClaim("id");
-        if (idClaim == null) {
-            return Uni.createFrom().failure(new WebApplicationException("Token inválido", Response.Status.UNAUTHORIZED));
+        if (operation == null || operation.trim().isEmpty()) {
+            throw new WebApplicationException("Campo 'operation' é obrigatório", Response.Status.BAD_REQUEST);
         }
 
-        // Criação do id Long baseado no token JWT (forma simples e resiliente)
-        Long tokenId;
+        Despesa.operations op;
         try {
-            tokenId = Long.parseLong(idClaim.toString());
-        } catch (Exception e) {
-            return Uni.createFrom().failure(new WebApplicationException("Token inválido", Response.Status.BAD_REQUEST));
+            op = Despesa.operations.valueOf(operation.trim().toUpperCase());
+        } catch (IllegalArgumentException e) {
+            throw new WebApplicationException("Campo 'operation' inválido (use 'D' ou 'C')", Response.Status.BAD_REQUEST);
+        }
+
+        if (date == null) {
+            throw new WebApplicationException("Campo 'date' é obrigatório", Response.Status.BAD_REQUEST);
+        }
+        Despesa despesa = new Despesa();
+        despesa.setIdUser(tokenId);
+        despesa.setAmountCents(amountCents);
+        despesa.setOperation(op);
+        despesa.setDate(date);
+        despesa.setTag(tag == null || tag.trim().isEmpty() ? "Outros" : tag);
+        return despesa;
+    }
+
+    private Uni<BatchResult> insertBatch(List<CreateDespesaRequest> items) {
+        Long tokenId = currentUser.id();
+        if (items == null || items.isEmpty()) {
+            return Uni.createFrom().failure(new WebApplicationException("Nenhuma despesa enviada", Response.Status.BAD_REQUEST));
+        }
+        if (items.size() > maxBatchSize) {
+            return Uni.createFrom().failure(batchTooLarge());
+        }
+
+        BatchResult result = new BatchResult();
+        List<Despesa> despesas = new ArrayList<>();
+        List<BatchItemResult> created = new ArrayList<>();
+        for (int i = 0; i < items.size(); i++) {
+            CreateDespesaRequest item = items.get(i);
+            BatchItemResult itemResult = new BatchItemResult();
+            itemResult.index = i;
+            result.results.add(itemResult);
+            if (item == null) {
+                itemResult.error = "Item inválido";
+                continue;
+            }
+            try {
+                Despesa despesa = buildDespesa(tokenId, cents(item.amountCents, item.amount), item.operation, item.tag, item.date);
+                despesas.add(despesa);
+                created.add(itemResult);
+            } catch (WebApplicationException e) {
+                itemResult.error = e.getMessage();
+            }
+        }
+        result.created = despesas.size();
+        result.failed = items.size() - despesas.size();
+        if (despesas.isEmpty()) {
+            return Uni.createFrom().item(result);
         }
 
-        return Despesa.calculateSaldoByUserId(tokenId);
+        return persistBatch(tokenId, despesas)
+            .map(v -> {
+                for (int i = 0; i < despesas.size(); i++) {
+                    created.get(i).id = despesas.get(i).id;
+                }
+                return result;
+            });
+    }
+
+    private WebApplicationException batchTooLarge() {
+        return new WebApplicationException(
+            "Limite de " + maxBatchSize + " despesas por lote excedido", Response.Status.REQUEST_ENTITY_TOO_LARGE);
+    }
+
+    // Um único persistAll + flush: com statement-batch-size o Hibernate agrupa os INSERTs
+    // O lote inteiro é uma única mudança para /despesas/changes
+    private Uni<Void> persistBatch(Long tokenId, List<Despesa> despesas) {
+        return Panache.withTransaction(() -> aggregates.nextChange(tokenId)
+                .invoke(seq -> despesas.forEach(despesa -> despesa.setChangeSeq(seq)))
+                .chain(seq -> Panache.getSession())
+                .chain(session -> session.persistAll(despesas.toArray()).chain(session::flush))
+                .chain(() -> aggregates.applyCreated(tokenId, despesas.stream().map(Despesa::snapshot).toList())))
+            .invoke(() -> committed(tokenId, despesas.get(0).getChangeSeq(), List.of(),
+                despesas.stream().map(Despesa::snapshot).toList()));
+    }
+
+    // Converte os filtros uma única vez, antes de abrir a sessão
+    private static DespesaFilter parseFilter(String operation, String tag, String dateStart, String dateEnd) {
+        try {
+            return DespesaFilter.parse(operation, tag, dateStart, dateEnd);
+        } catch (IllegalArgumentException e) {
+            throw new WebApplicationException("Filtros inválidos: use operation 'D' ou 'C' e datas yyyy-MM-dd", Response.Status.BAD_REQUEST);
+        }
+    }
+
+    private int pageSize(Integer limit) {
+        if (limit == null || limit <= 0) {
+            return Math.min(defaultPageSize, maxPageSize);
+        }
+        return Math.min(limit, maxPageSize);
+    }
+
+    private LocalDate parseCursorDate(String cursor) {
+        if (cursor == null || cursor.trim().isEmpty()) {
+            return null;
+        }
+        try {
+            DespesaPage.cursorId(cursor);
+            return DespesaPage.cursorDate(cursor);
+        } catch (Exception e) {
+            throw new WebApplicationException("Campo 'cursor' inválido", Response.Status.BAD_REQUEST);
+        }
     }
 
     public static class UpdateDespesaRequest {
-        public Double amount;
+        public Long amountCents;
+        public BigDecimal amount;
         public String operation;
         public String tag;
         public LocalDate date;
     }
 
     public static class CreateDespesaRequest {
-        public Double amount;
+        public Long amountCents;
+        // Compatibilidade: valor decimal, convertido para centavos sem ponto flutuante
+        public BigDecimal amount;
         public String operation;
         public String tag;
         public LocalDate date;
@@ -263,4 +757,16 @@ public class GastosResource {
         public Long id;
     }
 
+    public static class BatchItemResult {
+        public int index;
+        public Long id;
+        public String error;
+    }
+
+    public static class BatchResult {
+        public int created;
+        public int failed;
+        public List<BatchItemResult> results = new ArrayList<>();
+    }
+
 }
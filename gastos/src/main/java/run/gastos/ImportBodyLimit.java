@@ -0,0 +1,71 @@
+package run.gastos;
+
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+
+import io.quarkus.runtime.configuration.MemorySize;
+import io.quarkus.vertx.http.runtime.RouteConstants;
+import io.quarkus.vertx.http.runtime.VertxHttpRecorder;
+import io.vertx.core.http.HttpHeaders;
+import io.vertx.ext.web.Router;
+import io.vertx.ext.web.RoutingContext;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.event.Observes;
+
+/**
+ * Limite de corpo próprio da rota de importação. O limite global (quarkus.http.limits.max-body-size)
+ * fica no padrão para as rotas que montam o corpo em memória; só /gastos/despesas/import, que lê
+ * o corpo em streaming, aceita até {@code gastos.import.max-body-size}.
+ *
+ * <p>O limite global é um handler do Quarkus na ordem {@link RouteConstants#ROUTE_ORDER_UPLOAD_LIMIT}:
+ * recusa pelo Content-Length e, sem ele, deixa o limite no contexto para a leitura do corpo.
+ * Os dois handlers abaixo cercam esse handler apenas nesta rota.
+ */
+@ApplicationScoped
+public class ImportBodyLimit {
+
+    private static final String PATH = "/gastos/despesas/import";
+
+    private static final String CONTENT_LENGTH_KEY = "gastos.import.content-length";
+
+    @ConfigProperty(name = "gastos.import.max-body-size", defaultValue = "512M")
+    MemorySize maxBodySize;
+
+    void register(@Observes Router router) {
+        router.route(PATH).order(RouteConstants.ROUTE_ORDER_UPLOAD_LIMIT - 1).handler(this::beforeGlobalLimit);
+        router.route(PATH).order(RouteConstants.ROUTE_ORDER_UPLOAD_LIMIT + 1).handler(this::afterGlobalLimit);
+    }
+
+    // Aplica o limite do import ao Content-Length e o esconde do limite global
+    private void beforeGlobalLimit(RoutingContext ctx) {
+        String length = ctx.request().getHeader(HttpHeaders.CONTENT_LENGTH);
+        if (length != null) {
+            long declared;
+            try {
+                declared = Long.parseLong(length.trim());
+            } catch (NumberFormatException e) {
+                ctx.next();
+                return;
+            }
+            if (declared > maxBodySize.asLongValue()) {
+                ctx.response().setStatusCode(413)
+                    .putHeader(HttpHeaders.CONNECTION, "close")
+                    .endHandler(v -> ctx.request().connection().close())
+                    .end();
+                return;
+            }
+            ctx.put(CONTENT_LENGTH_KEY, length);
+            ctx.request().headers().remove(HttpHeaders.CONTENT_LENGTH);
+        }
+        ctx.next();
+    }
+
+    // Devolve o header e troca o limite que a leitura em streaming do corpo vai respeitar
+    private void afterGlobalLimit(RoutingContext ctx) {
+        String length = ctx.get(CONTENT_LENGTH_KEY);
+        if (length != null) {
+            ctx.request().headers().set(HttpHeaders.CONTENT_LENGTH, length);
+        }
+        ctx.put(VertxHttpRecorder.MAX_REQUEST_SIZE_KEY, maxBodySize.asLongValue());
+        ctx.next();
+    }
+}
@@ -0,0 +1,85 @@
+package run.gastos;
+
+import java.util.List;
+
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+
+import io.quarkus.hibernate.reactive.panache.Panache;
+import io.quarkus.logging.Log;
+import io.quarkus.runtime.StartupEvent;
+import io.quarkus.vertx.VertxContextSupport;
+import io.smallrye.mutiny.Uni;
+import jakarta.annotation.Priority;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.event.Observes;
+
+/**
+ * Migra os valores decimais antigos (Despesa.amount, tag_rollup.total, user_balance.saldo) para
+ * as colunas em centavos. Roda na subida, antes de atender requisições, e é idempotente: cada
+ * linha migrada tem a coluna antiga zerada para NULL, então uma subida interrompida continua de
+ * onde parou e bancos novos (sem as colunas antigas) não fazem nada.
+ *
+ * <p>Instâncias com a versão anterior (que ainda gravam só a coluna decimal) devem ser paradas
+ * antes da subida desta versão.
+ */
+@ApplicationScoped
+public class MoneyMigration {
+
+    // Tabela, coluna decimal antiga, coluna nova em centavos
+    private static final List<String[]> COLUMNS = List.of(
+        new String[] {"Despesa", "amount", "amountCents"},
+        new String[] {"tag_rollup", "total", "totalCents"},
+        new String[] {"user_balance", "saldo", "saldoCents"});
+
+    @ConfigProperty(name = "gastos.money.migrate-on-start", defaultValue = "true")
+    boolean migrateOnStart;
+
+    @ConfigProperty(name = "gastos.money.migrate-chunk-size", defaultValue = "5000")
+    int chunkSize;
+
+    // Antes dos demais observadores de subida (ex.: TagRollupRebuilder, que soma amountCents)
+    void onStart(@Observes @Priority(1) StartupEvent event) throws Throwable {
+        if (!migrateOnStart) {
+            return;
+        }
+        for (String[] column : COLUMNS) {
+            Long migrated = VertxContextSupport.subscribeAndAwait(() -> migrate(column[0], column[1], column[2]));
+            if (migrated > 0) {
+                Log.infof("%s.%s migrado para %s: %d linha(s)", column[0], column[1], column[2], migrated);
+            }
+        }
+    }
+
+    private Uni<Long> migrate(String table, String legacy, String cents) {
+        return Panache.withSession(() -> Panache.getSession()
+                .chain(session -> session.createNativeQuery(
+                        "SELECT COUNT(*) FROM information_schema.COLUMNS " +
+                        "WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME = :table AND COLUMN_NAME = :column", Long.class)
+                    .setParameter("table", table)
+                    .setParameter("column", legacy)
+                    .getSingleResult()))
+            .chain(exists -> {
+                if (exists == 0) {
+                    return Uni.createFrom().item(0L);
+                }
+                // A entidade não mapeia mais a coluna antiga: ela precisa aceitar NULL nos INSERTs novos
+                return Panache.withTransaction(() -> Panache.getSession()
+                        .chain(session -> session.createNativeQuery(
+                                "ALTER TABLE " + table + " MODIFY " + legacy + " DOUBLE NULL")
+                            .executeUpdate()))
+                    .chain(() -> migrateChunks(table, legacy, cents, 0L));
+            });
+    }
+
+    private Uni<Long> migrateChunks(String table, String legacy, String cents, long soFar) {
+        // DOUBLE -> DECIMAL antes de multiplicar: 0.1 vira 10 centavos, não 10.000000000000002
+        return Panache.withTransaction(() -> Panache.getSession()
+                .chain(session -> session.createNativeQuery(
+                        "UPDATE " + table + " SET " + cents + " = ROUND(CAST(" + legacy + " AS DECIMAL(20,4)) * 100), " +
+                        legacy + " = NULL WHERE " + legacy + " IS NOT NULL LIMIT " + chunkSize)
+                    .executeUpdate()))
+            .chain(updated -> updated < chunkSize
+                ? Uni.createFrom().item(soFar + updated)
+                : migrateChunks(table, legacy, cents, soFar + updated));
+    }
+}
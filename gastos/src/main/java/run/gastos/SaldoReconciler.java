@@ -0,0 +1,79 @@
+package run.gastos;
+
+import java.util.List;
+
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+
+import io.quarkus.hibernate.reactive.panache.Panache;
+import io.quarkus.logging.Log;
+import io.quarkus.scheduler.Scheduled;
+import io.smallrye.mutiny.Uni;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import run.gastos.model.UserBalance;
+
+/**
+ * Job que recalcula o ledger user_balance a partir das despesas e corrige divergências.
+ * Percorre os usuários em blocos (keyset por idUser), cada bloco na sua própria transação.
+ */
+@ApplicationScoped
+public class SaldoReconciler {
+
+    @ConfigProperty(name = "gastos.saldo.reconcile.chunk-size", defaultValue = "500")
+    int chunkSize;
+
+    @Inject
+    AggregateCache aggregateCache;
+
+    @Scheduled(every = "{gastos.saldo.reconcile.every}", delayed = "1m",
+               concurrentExecution = Scheduled.ConcurrentExecution.SKIP)
+    Uni<Void> reconcileAll() {
+        return reconcileFrom(0L, 0)
+            .chain(fixed -> Panache.withTransaction(() -> Panache.getSession()
+                // Usuários cujas despesas foram todas removidas devem ficar com saldo zero;
+                // a versão deles sobe antes, para que os ETags do saldo antigo deixem de valer
+                .chain(session -> session.createQuery(
+                        "SELECT b.idUser FROM UserBalance b WHERE b.saldoCents <> 0 " +
+                        "AND NOT EXISTS (SELECT 1 FROM Despesa d WHERE d.idUser = b.idUser)", Long.class)
+                    .getResultList()
+                    .call(userIds -> userIds.isEmpty() ? Uni.createFrom().voidItem() : session.createMutationQuery(
+                            "UPDATE UserDataVersion v SET v.version = v.version + 1 WHERE v.idUser IN :userIds")
+                        .setParameter("userIds", userIds)
+                        .executeUpdate()
+                        .chain(() -> session.createMutationQuery(
+                            "UPDATE UserBalance b SET b.saldoCents = 0 WHERE b.idUser IN :userIds " +
+                            "AND NOT EXISTS (SELECT 1 FROM Despesa d WHERE d.idUser = b.idUser)")
+                            .setParameter("userIds", userIds)
+                            .executeUpdate())
+                        .replaceWithVoid())))
+                .invoke(this::invalidate)
+                .onItem().transform(zeroed -> fixed + zeroed.size()))
+            .invoke(fixed -> Log.infof("Reconciliação de saldo concluída: %d saldo(s) corrigido(s)", fixed))
+            .replaceWithVoid();
+    }
+
+    private Uni<Integer> reconcileFrom(Long afterUserId, int fixedSoFar) {
+        return Panache.withSession(() -> Panache.getSession()
+                .chain(session -> session.createQuery(
+                        "SELECT DISTINCT d.idUser FROM Despesa d WHERE d.idUser > :after ORDER BY d.idUser", Long.class)
+                    .setParameter("after", afterUserId)
+                    .setMaxResults(chunkSize)
+                    .getResultList()))
+            .chain(userIds -> {
+                if (userIds.isEmpty()) {
+                    return Uni.createFrom().item(fixedSoFar);
+                }
+                Long last = userIds.get(userIds.size() - 1);
+                return Panache.withTransaction(() -> UserBalance.reconcile(userIds))
+                    .invoke(this::invalidate)
+                    .chain(fixed -> userIds.size() < chunkSize
+                        ? Uni.createFrom().item(fixedSoFar + fixed.size())
+                        : reconcileFrom(last, fixedSoFar + fixed.size()));
+            });
+    }
+
+    // Depois do commit: a versão e o saldo em cache dos usuários corrigidos deixam de valer
+    private void invalidate(List<Long> userIds) {
+        userIds.forEach(aggregateCache::invalidateUser);
+    }
+}
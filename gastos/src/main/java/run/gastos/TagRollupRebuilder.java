@@ -0,0 +1,59 @@
+package run.gastos;
+
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+
+import io.quarkus.hibernate.reactive.panache.Panache;
+import io.quarkus.logging.Log;
+import io.quarkus.runtime.StartupEvent;
+import io.quarkus.vertx.VertxContextSupport;
+import io.smallrye.mutiny.Uni;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.event.Observes;
+import run.gastos.model.TagRollup;
+
+/**
+ * Backfill do rollup mensal por tag de todos os usuários de uma vez. Opcional: sem ele cada
+ * usuário tem o rollup montado na primeira leitura ({@link TagRollup#ensureSeeded}).
+ * Executado na subida quando {@code gastos.tag-rollup.rebuild-on-start=true}, por exemplo:
+ * {@code ./mvnw quarkus:dev -Dgastos.tag-rollup.rebuild-on-start=true}
+ */
+@ApplicationScoped
+public class TagRollupRebuilder {
+
+    @ConfigProperty(name = "gastos.tag-rollup.rebuild-on-start", defaultValue = "false")
+    boolean rebuildOnStart;
+
+    @ConfigProperty(name = "gastos.tag-rollup.rebuild-chunk-size", defaultValue = "200")
+    int chunkSize;
+
+    void onStart(@Observes StartupEvent event) throws Throwable {
+        if (!rebuildOnStart) {
+            return;
+        }
+        Log.info("Reconstruindo rollup mensal por tag...");
+        Integer users = VertxContextSupport.subscribeAndAwait(() -> rebuildFrom(0L, 0));
+        Log.infof("Rollup mensal por tag reconstruído para %d usuário(s)", users);
+    }
+
+    /**
+     * Reconstrói os rollups de todos os usuários em blocos, cada bloco na sua própria transação.
+     */
+    public Uni<Integer> rebuildFrom(Long afterUserId, int usersSoFar) {
+        return Panache.withSession(() -> Panache.getSession()
+                .chain(session -> session.createQuery(
+                        "SELECT DISTINCT d.idUser FROM Despesa d WHERE d.idUser > :after ORDER BY d.idUser", Long.class)
+                    .setParameter("after", afterUserId)
+                    .setMaxResults(chunkSize)
+                    .getResultList()))
+            .chain(userIds -> {
+                if (userIds.isEmpty()) {
+                    return Uni.createFrom().item(usersSoFar);
+                }
+                Long last = userIds.get(userIds.size() - 1);
+                return Panache.withTransaction(() -> TagRollup.rebuild(userIds))
+                    .chain(rows -> userIds.size() < chunkSize
+                        ? Uni.createFrom().item(usersSoFar + userIds.size())
+                        : rebuildFrom(last, usersSoFar + userIds.size()));
+            });
+    }
+}
@@ -0,0 +1,185 @@
+package run.gastos.model;
+
+import java.io.Serializable;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+
+import io.quarkus.hibernate.reactive.panache.Panache;
+import io.quarkus.hibernate.reactive.panache.PanacheEntityBase;
+import io.smallrye.mutiny.Uni;
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.IdClass;
+import jakarta.persistence.Table;
+
+/**
+ * Saldo acumulado do usuário no fim de cada mês (em centavos), derivado do rollup mensal.
+ * Escritas não atualizam os checkpoints: marcam o mês mais antigo afetado em
+ * {@link BalanceCheckpointDirty} e o job de recomputação refaz só os meses a partir dele.
+ *
+ * <p>O saldo numa data é o último checkpoint válido antes do mês, mais os rollups dos meses
+ * entre ele e o mês pedido, mais as despesas do próprio mês até o dia. Checkpoints ainda
+ * não recalculados deixam a leitura mais cara, nunca errada.
+ */
+@Entity
+@Table(name = "balance_checkpoint")
+@IdClass(BalanceCheckpoint.Key.class)
+public class BalanceCheckpoint extends PanacheEntityBase {
+
+    @Id
+    @Column(name = "idUser")
+    private Long idUser;
+
+    // Ano e mês no formato yyyyMM, como em tag_rollup
+    @Id
+    @Column(name = "yearMonth")
+    private Integer yearMonth;
+
+    @Column(name = "closingCents", nullable = false)
+    private long closingCents;
+
+    public BalanceCheckpoint() {}
+    public BalanceCheckpoint(Long idUser, Integer yearMonth, long closingCents) {
+        this.idUser = idUser;
+        this.yearMonth = yearMonth;
+        this.closingCents = closingCents;
+    }
+
+    public Long getIdUser() {
+        return idUser;
+    }
+
+    public Integer getYearMonth() {
+        return yearMonth;
+    }
+
+    public long getClosingCents() {
+        return closingCents;
+    }
+
+    private static final String NET_CASE =
+        "CASE WHEN r.operation = run.gastos.model.Despesa$operations.C THEN r.totalCents ELSE -r.totalCents END";
+
+    /**
+     * Saldo em centavos ao fim do dia {@code asOf}. Deve rodar numa transação, para que as
+     * leituras vejam o mesmo snapshot.
+     */
+    public static Uni<Long> saldoAsOf(Long userId, LocalDate asOf) {
+        int month = TagRollup.yearMonthOf(YearMonth.from(asOf));
+
+        return TagRollup.ensureSeeded(userId)
+            .chain(() -> Panache.getSession())
+            .chain(session -> BalanceCheckpointDirty.fromMonth(userId)
+                .chain(dirtyFrom -> {
+                    // Só vale checkpoint anterior ao mês pedido e ao primeiro mês pendente de recálculo
+                    int limit = dirtyFrom == null ? month : Math.min(month, dirtyFrom);
+                    return session.createSelectionQuery(
+                            "SELECT c FROM BalanceCheckpoint c WHERE c.idUser = :userId AND c.yearMonth < :limit " +
+                            "ORDER BY c.yearMonth DESC", BalanceCheckpoint.class)
+                        .setParameter("userId", userId)
+                        .setParameter("limit", limit)
+                        .setMaxResults(1)
+                        .setReadOnly(true)
+                        .getSingleResultOrNull();
+                })
+                .chain(checkpoint -> {
+                    long base = checkpoint == null ? 0 : checkpoint.closingCents;
+                    int after = checkpoint == null ? 0 : checkpoint.yearMonth;
+                    return session.createSelectionQuery(
+                            "SELECT COALESCE(SUM(" + NET_CASE + "), 0) FROM TagRollup r " +
+                            "WHERE r.idUser = :userId AND r.yearMonth > :after AND r.yearMonth < :month", Long.class)
+                        .setParameter("userId", userId)
+                        .setParameter("after", after)
+                        .setParameter("month", month)
+                        .getSingleResult()
+                        .map(months -> base + months);
+                })
+                .chain(closedMonths -> session.createSelectionQuery(
+                        "SELECT COALESCE(SUM(CASE WHEN d.operation = run.gastos.model.Despesa$operations.C THEN d.amountCents " +
+                        "ELSE -d.amountCents END), 0) FROM Despesa d " +
+                        "WHERE d.idUser = :userId AND d.date >= :monthStart AND d.date <= :asOf", Long.class)
+                    .setParameter("userId", userId)
+                    .setParameter("monthStart", asOf.withDayOfMonth(1))
+                    .setParameter("asOf", asOf)
+                    .getSingleResult()
+                    .map(partial -> closedMonths + partial)));
+    }
+
+    /**
+     * Refaz os checkpoints do usuário a partir do mês marcado como pendente e remove a marca.
+     * A trava da marca tem de ser a primeira instrução da transação: no REPEATABLE READ o snapshot
+     * nasce na primeira leitura comum, então só depois da trava ele inclui as escritas que
+     * terminaram enquanto esta esperava. Por isso o rollup precisa ter sido semeado antes, em outra
+     * transação ({@link TagRollup#ensureSeeded}).
+     *
+     * @return quantos checkpoints foram gravados (0 se não havia nada pendente)
+     */
+    public static Uni<Integer> recompute(Long userId) {
+        return Panache.getSession()
+            .chain(session -> BalanceCheckpointDirty.lockFromMonth(userId)
+                .chain(from -> {
+                    if (from == null) {
+                        return Uni.createFrom().item(0);
+                    }
+                    return session.createSelectionQuery(
+                            "SELECT c FROM BalanceCheckpoint c WHERE c.idUser = :userId AND c.yearMonth < :from " +
+                            "ORDER BY c.yearMonth DESC", BalanceCheckpoint.class)
+                        .setParameter("userId", userId)
+                        .setParameter("from", from)
+                        .setMaxResults(1)
+                        .getSingleResultOrNull()
+                        .chain(previous -> session.createMutationQuery(
+                                "DELETE FROM BalanceCheckpoint c WHERE c.idUser = :userId AND c.yearMonth >= :from")
+                            .setParameter("userId", userId)
+                            .setParameter("from", from)
+                            .executeUpdate()
+                            // Só os meses a partir da marca: o histórico anterior não é relido
+                            .chain(() -> session.createSelectionQuery(
+                                    "SELECT r.yearMonth, SUM(" + NET_CASE + ") FROM TagRollup r " +
+                                    "WHERE r.idUser = :userId AND r.yearMonth >= :from " +
+                                    "GROUP BY r.yearMonth ORDER BY r.yearMonth", Object[].class)
+                                .setParameter("userId", userId)
+                                .setParameter("from", from)
+                                .getResultList())
+                            .chain(rows -> {
+                                long closing = previous == null ? 0 : previous.closingCents;
+                                List<BalanceCheckpoint> checkpoints = new ArrayList<>(rows.size());
+                                for (Object[] row : rows) {
+                                    closing += ((Number) row[1]).longValue();
+                                    checkpoints.add(new BalanceCheckpoint(userId, ((Number) row[0]).intValue(), closing));
+                                }
+                                return session.persistAll(checkpoints.toArray())
+                                    .chain(session::flush)
+                                    .replaceWith(checkpoints.size());
+                            }))
+                        .call(() -> BalanceCheckpointDirty.clear(userId));
+                }));
+    }
+
+    public static class Key implements Serializable {
+        public Long idUser;
+        public Integer yearMonth;
+
+        public Key() {}
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Key other)) {
+                return false;
+            }
+            return Objects.equals(idUser, other.idUser) && Objects.equals(yearMonth, other.yearMonth);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(idUser, yearMonth);
+        }
+    }
+}
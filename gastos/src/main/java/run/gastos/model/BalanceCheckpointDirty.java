@@ -0,0 +1,103 @@
+package run.gastos.model;
+
+import java.util.List;
+
+import io.quarkus.hibernate.reactive.panache.Panache;
+import io.quarkus.hibernate.reactive.panache.PanacheEntityBase;
+import io.smallrye.mutiny.Uni;
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+
+/**
+ * Mês mais antigo (yyyyMM) cujo checkpoint de saldo precisa ser recalculado, por usuário.
+ * Marcado na transação de cada escrita de Despesa; removido pelo job de recomputação.
+ */
+@Entity
+@Table(name = "balance_checkpoint_dirty")
+public class BalanceCheckpointDirty extends PanacheEntityBase {
+
+    @Id
+    @Column(name = "idUser")
+    private Long idUser;
+
+    @Column(name = "fromYearMonth", nullable = false)
+    private int fromYearMonth;
+
+    public BalanceCheckpointDirty() {}
+
+    public Long getIdUser() {
+        return idUser;
+    }
+
+    public int getFromYearMonth() {
+        return fromYearMonth;
+    }
+
+    // Mantém o menor mês pendente: uma edição retroativa recua a marca, nunca avança
+    public static Uni<Void> mark(Long userId, int yearMonth) {
+        return Panache.getSession()
+            .onItem().transformToUni(session ->
+                session.createNativeQuery("INSERT INTO balance_checkpoint_dirty (idUser, fromYearMonth) VALUES (:userId, :month) " +
+                                          "ON DUPLICATE KEY UPDATE fromYearMonth = LEAST(fromYearMonth, VALUES(fromYearMonth))")
+                    .setParameter("userId", userId)
+                    .setParameter("month", yearMonth)
+                    .executeUpdate()
+            )
+            .replaceWithVoid();
+    }
+
+    // Marca todo o histórico dos usuários (ex.: depois de reconstruir o rollup)
+    public static Uni<Void> markAll(List<Long> userIds) {
+        if (userIds.isEmpty()) {
+            return Uni.createFrom().voidItem();
+        }
+        return Panache.getSession()
+            .onItem().transformToUni(session ->
+                session.createNativeQuery("INSERT INTO balance_checkpoint_dirty (idUser, fromYearMonth) " +
+                                          "SELECT DISTINCT idUser, 0 FROM tag_rollup WHERE idUser IN (:userIds) " +
+                                          "ON DUPLICATE KEY UPDATE fromYearMonth = 0")
+                    .setParameter("userIds", userIds)
+                    .executeUpdate()
+            )
+            .replaceWithVoid();
+    }
+
+    static Uni<Integer> fromMonth(Long userId) {
+        return BalanceCheckpointDirty.<BalanceCheckpointDirty>findById(userId)
+            .onItem().transform(row -> row == null ? null : row.fromYearMonth);
+    }
+
+    static Uni<Integer> lockFromMonth(Long userId) {
+        return Panache.getSession()
+            .onItem().transformToUni(session ->
+                session.createNativeQuery("SELECT fromYearMonth FROM balance_checkpoint_dirty WHERE idUser = :userId FOR UPDATE",
+                        Integer.class)
+                    .setParameter("userId", userId)
+                    .getSingleResultOrNull()
+            );
+    }
+
+    static Uni<Void> clear(Long userId) {
+        return Panache.getSession()
+            .onItem().transformToUni(session ->
+                session.createMutationQuery("DELETE FROM BalanceCheckpointDirty m WHERE m.idUser = :userId")
+                    .setParameter("userId", userId)
+                    .executeUpdate()
+            )
+            .replaceWithVoid();
+    }
+
+    // Usuários com checkpoints pendentes, em blocos ordenados por idUser
+    public static Uni<List<Long>> pendingAfter(Long afterUserId, int limit) {
+        return Panache.getSession()
+            .onItem().transformToUni(session ->
+                session.createSelectionQuery("SELECT m.idUser FROM BalanceCheckpointDirty m WHERE m.idUser > :after ORDER BY m.idUser",
+                        Long.class)
+                    .setParameter("after", afterUserId)
+                    .setMaxResults(limit)
+                    .getResultList()
+            );
+    }
+}
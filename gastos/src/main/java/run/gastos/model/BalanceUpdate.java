@@ -0,0 +1,56 @@
+package run.gastos.model;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+/**
+ * Evento do stream /gastos/saldo/stream: saldo atual e, para cada mês tocado pela escrita,
+ * os totais por tag que mudaram. {@code version} é a versão dos dados do usuário; o cliente
+ * descarta eventos com versão menor que a do último aplicado.
+ */
+public class BalanceUpdate {
+
+    public static final String UPDATE = "update";
+    public static final String HEARTBEAT = "heartbeat";
+
+    private String type;
+    private Long version;
+    private Long saldoCents;
+    private List<MonthTags> months;
+
+    public BalanceUpdate() {}
+    public BalanceUpdate(String type, Long version, Long saldoCents, List<MonthTags> months) {
+        this.type = type;
+        this.version = version;
+        this.saldoCents = saldoCents;
+        this.months = months;
+    }
+
+    public static BalanceUpdate heartbeat() {
+        return new BalanceUpdate(HEARTBEAT, null, null, List.of());
+    }
+
+    public String getType() {
+        return type;
+    }
+
+    public Long getVersion() {
+        return version;
+    }
+
+    public Long getSaldoCents() {
+        return saldoCents;
+    }
+
+    // Valor decimal exato, mantido no JSON para clientes que ainda leem "saldo"
+    public BigDecimal getSaldo() {
+        return saldoCents == null ? null : Money.toDecimal(saldoCents);
+    }
+
+    public List<MonthTags> getMonths() {
+        return months;
+    }
+
+    // Totais de débito por tag no mês (yyyy-MM), só das tags afetadas
+    public record MonthTags(String month, List<TagSum> tags) {}
+}
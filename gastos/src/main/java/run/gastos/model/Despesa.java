@@ -5,16 +5,27 @@ import java.time.LocalDate;
 import io.quarkus.hibernate.reactive.panache.PanacheEntity;
 import jakarta.persistence.Column;
 import jakarta.persistence.Entity;
+import jakarta.persistence.Index;
+import jakarta.persistence.Table;
 
 
 @Entity
+@Table(indexes = {
+    // Listagem e paginação: filtro por usuário, ordem e cursor por (date, id)
+    @Index(name = "idx_despesa_user_date_id", columnList = "idUser, date, id"),
+    // Somas por tag/operação em intervalo de datas (por-tags, bordas do rollup)
+    @Index(name = "idx_despesa_user_op_tag_date", columnList = "idUser, operation, tag, date"),
+    // Sincronização incremental (/despesas/changes)
+    @Index(name = "idx_despesa_user_change", columnList = "idUser, changeSeq")
+})
 public class Despesa extends PanacheEntity {
 
     @Column(nullable = false)
     private Long idUser;
 
+    // Valor em centavos; a coluna decimal antiga (amount) é migrada por MoneyMigration
     @Column(nullable = false)
-    private Double amount;
+    private long amountCents;
 
     public enum operations{
         D,
@@ -29,10 +40,14 @@ public class Despesa extends PanacheEntity {
     @Column(nullable = false)
     private LocalDate date;
 
+    // Versão do usuário na última escrita desta despesa; linhas anteriores ao versionamento ficam com 0
+    @Column(nullable = false, columnDefinition = "bigint default 0")
+    private Long changeSeq = 0L;
+
     public Despesa() {}
-    public Despesa(Long idUser, Double amount, operations operation, String tag, LocalDate date) {
+    public Despesa(Long idUser, long amountCents, operations operation, String tag, LocalDate date) {
         this.idUser = idUser;
-        this.amount = amount;
+        this.amountCents = amountCents;
         this.operation = operation;
         this.tag = tag;
         this.date = date;
@@ -45,11 +60,16 @@ public class Despesa extends PanacheEntity {
         this.idUser = idUser;
     }
 
-    public Double getAmount() {
-        return amount;
+    public long getAmountCents() {
+        return amountCents;
+    }
+    public void setAmountCents(long amountCents) {
+        this.amountCents = amountCents;
     }
-    public void setAmount(Double amount) {
-        this.amount = amount;
+
+    // Valor decimal exato, mantido no JSON para clientes que ainda leem "amount"
+    public java.math.BigDecimal getAmount() {
+        return Money.toDecimal(amountCents);
     }
 
     public String getOperation() {
@@ -73,53 +93,150 @@ public class Despesa extends PanacheEntity {
         this.date = date;
     }
 
-    public static io.smallrye.mutiny.Uni<java.util.List<Despesa>> getDespesasByFilters(Long userId, String operation, String tag, String dateStart, String dateEnd) {
-        StringBuilder queryBuilder = new StringBuilder("SELECT d FROM Despesa d WHERE d.idUser = :userId");
-        
-        if (operation != null && !operation.trim().isEmpty()) {
-            queryBuilder.append(" AND d.operation = :operation");
-        }
-        if (tag != null && !tag.trim().isEmpty()) {
-            queryBuilder.append(" AND d.tag = :tag");
-        }
-        if (dateStart != null) {
-            queryBuilder.append(" AND d.date >= :dateStart");
-        }
-        if (dateEnd != null) {
-            queryBuilder.append(" AND d.date <= :dateEnd");
+    public Long getChangeSeq() {
+        return changeSeq;
+    }
+    public void setChangeSeq(Long changeSeq) {
+        this.changeSeq = changeSeq;
+    }
+
+    public DespesaSnapshot snapshot() {
+        return new DespesaSnapshot(idUser, amountCents, operation, tag, date);
+    }
+
+    // Variantes de consulta pré-montadas, indexadas por DespesaFilter.mask(): a string de cada
+    // combinação de filtros é sempre a mesma instância, o que mantém o cache de planos do Hibernate
+    // e o cache de prepared statements do MySQL estáveis
+    private static final String[] LIST_QUERIES = new String[DespesaFilter.VARIANTS];
+    private static final String[] FIRST_PAGE_QUERIES = new String[DespesaFilter.VARIANTS];
+    private static final String[] NEXT_PAGE_QUERIES = new String[DespesaFilter.VARIANTS];
+
+    static {
+        for (int mask = 0; mask < DespesaFilter.VARIANTS; mask++) {
+            String query = "SELECT d FROM Despesa d WHERE d.idUser = :userId" + DespesaFilter.where(mask);
+            LIST_QUERIES[mask] = query;
+            FIRST_PAGE_QUERIES[mask] = query + " ORDER BY d.date DESC, d.id DESC";
+            NEXT_PAGE_QUERIES[mask] = query + " AND (d.date < :cursorDate OR (d.date = :cursorDate AND d.id < :cursorId))"
+                + " ORDER BY d.date DESC, d.id DESC";
         }
+    }
+
+    public static io.smallrye.mutiny.Uni<java.util.List<Despesa>> getDespesasByFilters(Long userId, DespesaFilter filter) {
+        String query = LIST_QUERIES[filter.mask()];
+
+        return io.quarkus.hibernate.reactive.panache.Panache.getSession()
+            .onItem().transformToUni(session ->
+                filter.bind(session.createQuery(query, Despesa.class)
+                    .setParameter("userId", userId))
+                    .getResultList()
+            );
+    }
+
+    /**
+     * Página de despesas em ordem decrescente de (date, id). O cursor é a chave da última linha
+     * da página anterior, então o custo de cada página não depende de quantas já foram lidas.
+     */
+    public static io.smallrye.mutiny.Uni<DespesaPage> getDespesasPage(Long userId, DespesaFilter filter,
+                                                                      LocalDate cursorDate, Long cursorId, int limit) {
+        String query = cursorDate == null ? FIRST_PAGE_QUERIES[filter.mask()] : NEXT_PAGE_QUERIES[filter.mask()];
 
-        String query = queryBuilder.toString();
-        
         return io.quarkus.hibernate.reactive.panache.Panache.getSession()
             .onItem().transformToUni(session -> {
-                var q = session.createQuery(query, Despesa.class)
-                    .setParameter("userId", userId);
-                
-                if (operation != null && !operation.trim().isEmpty()) {
-                    q.setParameter("operation", Despesa.operations.valueOf(operation.trim().toUpperCase()));
-                }
-                if (tag != null && !tag.trim().isEmpty()) {
-                    q.setParameter("tag", tag);
-                }
-                if (dateStart != null) {
-                    q.setParameter("dateStart", LocalDate.parse(dateStart));
+                var q = filter.bind(session.createQuery(query, Despesa.class)
+                    .setParameter("userId", userId));
+
+                if (cursorDate != null) {
+                    q.setParameter("cursorDate", cursorDate);
+                    q.setParameter("cursorId", cursorId);
                 }
-                if (dateEnd != null) {
-                    q.setParameter("dateEnd", LocalDate.parse(dateEnd));
+
+                // Busca uma linha a mais só para saber se existe próxima página
+                return q.setMaxResults(limit + 1).getResultList();
+            })
+            .onItem().transform(rows -> {
+                if (rows.size() <= limit) {
+                    return new DespesaPage(rows, null);
                 }
-                
-                return q.getResultList();
+                java.util.List<Despesa> items = rows.subList(0, limit);
+                Despesa last = items.get(limit - 1);
+                return new DespesaPage(items, DespesaPage.cursorOf(last));
             });
     }
 
-    public static io.smallrye.mutiny.Uni<Double> calculateSaldoByUserId(Long userId) {
-        String query = "SELECT COALESCE(SUM(CASE WHEN d.operation = run.gastos.model.Despesa$operations.C THEN d.amount " +
-                       "WHEN d.operation = run.gastos.model.Despesa$operations.D THEN -d.amount ELSE 0 END), 0) " +
+    /**
+     * Percorre o histórico filtrado página a página, cada uma na sua própria sessão.
+     * A memória fica limitada a uma página, independente do tamanho do histórico.
+     */
+    public static io.smallrye.mutiny.Multi<Despesa> streamDespesasByFilters(Long userId, DespesaFilter filter, int pageSize) {
+        return io.smallrye.mutiny.Multi.createBy().repeating()
+            .uni(() -> new java.util.concurrent.atomic.AtomicReference<String>(),
+                 next -> io.quarkus.hibernate.reactive.panache.Panache.withSession(() -> {
+                    String cursor = next.get();
+                    return getDespesasPage(userId, filter, DespesaPage.cursorDate(cursor), DespesaPage.cursorId(cursor), pageSize);
+                 })
+                 .invoke(page -> next.set(page.getNextCursor())))
+            .whilst(page -> page.getNextCursor() != null)
+            .onItem().transformToIterable(DespesaPage::getItems);
+    }
+
+    /**
+     * Busca a despesa só se pertencer ao usuário. A entidade volta como somente leitura: alterações
+     * nela não geram UPDATE no flush, a escrita é feita por {@link #updateOwned} / {@link #deleteOwned}.
+     */
+    public static io.smallrye.mutiny.Uni<Despesa> findOwned(Long userId, Long id) {
+        return io.quarkus.hibernate.reactive.panache.Panache.getSession()
+            .onItem().transformToUni(session ->
+                session.createSelectionQuery("SELECT d FROM Despesa d WHERE d.id = :id AND d.idUser = :userId", Despesa.class)
+                    .setParameter("id", id)
+                    .setParameter("userId", userId)
+                    .setReadOnly(true)
+                    .getSingleResultOrNull()
+            );
+    }
+
+    /**
+     * Grava os campos de {@code changed} numa única instrução condicional: só afeta a linha se ela
+     * ainda pertence ao usuário e continua na versão {@code expectedSeq} (controle otimista).
+     *
+     * @return linhas afetadas; 0 significa que a despesa mudou ou foi removida desde a leitura
+     */
+    public static io.smallrye.mutiny.Uni<Integer> updateOwned(Despesa changed, Long expectedSeq) {
+        return io.quarkus.hibernate.reactive.panache.Panache.getSession()
+            .onItem().transformToUni(session ->
+                session.createMutationQuery("UPDATE Despesa d SET d.amountCents = :amountCents, d.operation = :operation, " +
+                                            "d.tag = :tag, d.date = :date, d.changeSeq = :changeSeq " +
+                                            "WHERE d.id = :id AND d.idUser = :userId AND d.changeSeq = :expectedSeq")
+                    .setParameter("amountCents", changed.amountCents)
+                    .setParameter("operation", changed.operation)
+                    .setParameter("tag", changed.tag)
+                    .setParameter("date", changed.date)
+                    .setParameter("changeSeq", changed.changeSeq)
+                    .setParameter("id", changed.id)
+                    .setParameter("userId", changed.idUser)
+                    .setParameter("expectedSeq", expectedSeq)
+                    .executeUpdate()
+            );
+    }
+
+    public static io.smallrye.mutiny.Uni<Integer> deleteOwned(Long userId, Long id, Long expectedSeq) {
+        return io.quarkus.hibernate.reactive.panache.Panache.getSession()
+            .onItem().transformToUni(session ->
+                session.createMutationQuery("DELETE FROM Despesa d WHERE d.id = :id AND d.idUser = :userId AND d.changeSeq = :expectedSeq")
+                    .setParameter("id", id)
+                    .setParameter("userId", userId)
+                    .setParameter("expectedSeq", expectedSeq)
+                    .executeUpdate()
+            );
+    }
+
+    // Saldo em centavos; a soma é inteira no banco, sem arredondamento acumulado
+    public static io.smallrye.mutiny.Uni<Long> calculateSaldoByUserId(Long userId) {
+        String query = "SELECT COALESCE(SUM(CASE WHEN d.operation = run.gastos.model.Despesa$operations.C THEN d.amountCents " +
+                       "WHEN d.operation = run.gastos.model.Despesa$operations.D THEN -d.amountCents ELSE 0 END), 0) " +
                        "FROM Despesa d WHERE d.idUser = :userId";
         return io.quarkus.hibernate.reactive.panache.Panache.getSession()
             .onItem().transformToUni(session ->
-                session.createQuery(query, Double.class)
+                session.createQuery(query, Long.class)
                     .setParameter("userId", userId)
                     .getSingleResult()
             );
@@ -0,0 +1,92 @@
+package run.gastos.model;
+
+import java.util.List;
+
+import io.quarkus.hibernate.reactive.panache.Panache;
+import io.smallrye.mutiny.Uni;
+
+/**
+ * Mudanças de um usuário depois de um cursor: despesas criadas/alteradas e ids removidos.
+ * O cursor é a versão dos dados do usuário ({@link UserDataVersion}); como a linha de versão
+ * fica travada até o commit de cada escrita, as mudanças ficam visíveis na ordem do cursor
+ * e nenhuma mudança com número menor que o cursor devolvido pode aparecer depois.
+ */
+public class DespesaChanges {
+
+    private static final String UPSERTS = "SELECT d FROM Despesa d WHERE d.idUser = :userId " +
+                                          "AND d.changeSeq > :since AND d.changeSeq <= :until ORDER BY d.changeSeq, d.id";
+    private static final String DELETES = "SELECT t.id FROM DespesaTombstone t WHERE t.idUser = :userId " +
+                                          "AND t.changeSeq > :since AND t.changeSeq <= :until ORDER BY t.changeSeq, t.id";
+
+    private List<Despesa> upserts;
+    private List<Long> deletes;
+    private long cursor;
+    private boolean resync;
+
+    public DespesaChanges() {}
+    public DespesaChanges(List<Despesa> upserts, List<Long> deletes, long cursor, boolean resync) {
+        this.upserts = upserts;
+        this.deletes = deletes;
+        this.cursor = cursor;
+        this.resync = resync;
+    }
+
+    public List<Despesa> getUpserts() {
+        return upserts;
+    }
+
+    public List<Long> getDeletes() {
+        return deletes;
+    }
+
+    // Valor a enviar como "since" na próxima chamada
+    public long getCursor() {
+        return cursor;
+    }
+
+    // true quando há mudanças demais (ou o cursor é desconhecido): o cliente deve recarregar pela listagem
+    public boolean isResync() {
+        return resync;
+    }
+
+    /**
+     * {@code since = 0} devolve todas as despesas atuais (inclusive as anteriores ao versionamento)
+     * e nenhum delete. Mais de {@code maxSize} mudanças viram {@code resync}.
+     */
+    public static Uni<DespesaChanges> since(Long userId, long since, int maxSize) {
+        return UserDataVersion.current(userId)
+            .chain(current -> {
+                if (since > current) {
+                    return Uni.createFrom().item(new DespesaChanges(List.of(), List.of(), current, true));
+                }
+                if (since == current && since != 0) {
+                    return Uni.createFrom().item(new DespesaChanges(List.of(), List.of(), current, false));
+                }
+                long lowerBound = since == 0 ? -1 : since;
+                return Panache.getSession()
+                    .chain(session -> session.createQuery(UPSERTS, Despesa.class)
+                        .setParameter("userId", userId)
+                        .setParameter("since", lowerBound)
+                        .setParameter("until", current)
+                        .setMaxResults(maxSize + 1)
+                        .getResultList()
+                        .chain(upserts -> {
+                            if (upserts.size() > maxSize) {
+                                return Uni.createFrom().item(new DespesaChanges(List.of(), List.of(), current, true));
+                            }
+                            if (since == 0) {
+                                return Uni.createFrom().item(new DespesaChanges(upserts, List.of(), current, false));
+                            }
+                            return session.createQuery(DELETES, Long.class)
+                                .setParameter("userId", userId)
+                                .setParameter("since", since)
+                                .setParameter("until", current)
+                                .setMaxResults(maxSize - upserts.size() + 1)
+                                .getResultList()
+                                .map(deletes -> upserts.size() + deletes.size() > maxSize
+                                    ? new DespesaChanges(List.of(), List.of(), current, true)
+                                    : new DespesaChanges(upserts, deletes, current, false));
+                        }));
+            });
+    }
+}
@@ -0,0 +1,82 @@
+package run.gastos.model;
+
+import java.time.LocalDate;
+
+import org.hibernate.reactive.mutiny.Mutiny;
+
+/**
+ * Filtros opcionais da listagem de despesas, já convertidos e validados.
+ * Cada combinação de filtros presentes vira um bit de {@link #mask()}, que indexa
+ * as variantes de consulta pré-montadas em {@link Despesa}.
+ */
+public record DespesaFilter(Despesa.operations operation, String tag, LocalDate dateStart, LocalDate dateEnd) {
+
+    public static final int VARIANTS = 16;
+
+    private static final int OPERATION = 1;
+    private static final int TAG = 2;
+    private static final int DATE_START = 4;
+    private static final int DATE_END = 8;
+
+    /**
+     * Converte os parâmetros recebidos na requisição. Valores vazios contam como ausentes.
+     *
+     * @throws IllegalArgumentException se a operação não for C/D ou uma data não estiver em yyyy-MM-dd
+     */
+    public static DespesaFilter parse(String operation, String tag, String dateStart, String dateEnd) {
+        Despesa.operations op = isBlank(operation) ? null : Despesa.operations.valueOf(operation.trim().toUpperCase());
+        try {
+            return new DespesaFilter(op,
+                isBlank(tag) ? null : tag,
+                isBlank(dateStart) ? null : LocalDate.parse(dateStart.trim()),
+                isBlank(dateEnd) ? null : LocalDate.parse(dateEnd.trim()));
+        } catch (java.time.format.DateTimeException e) {
+            throw new IllegalArgumentException(e.getMessage(), e);
+        }
+    }
+
+    public int mask() {
+        return (operation != null ? OPERATION : 0)
+            | (tag != null ? TAG : 0)
+            | (dateStart != null ? DATE_START : 0)
+            | (dateEnd != null ? DATE_END : 0);
+    }
+
+    // Condições HQL de uma variante, sobre o alias "d"
+    static String where(int mask) {
+        StringBuilder where = new StringBuilder();
+        if ((mask & OPERATION) != 0) {
+            where.append(" AND d.operation = :operation");
+        }
+        if ((mask & TAG) != 0) {
+            where.append(" AND d.tag = :tag");
+        }
+        if ((mask & DATE_START) != 0) {
+            where.append(" AND d.date >= :dateStart");
+        }
+        if ((mask & DATE_END) != 0) {
+            where.append(" AND d.date <= :dateEnd");
+        }
+        return where.toString();
+    }
+
+    <R> Mutiny.SelectionQuery<R> bind(Mutiny.SelectionQuery<R> q) {
+        if (operation != null) {
+            q.setParameter("operation", operation);
+        }
+        if (tag != null) {
+            q.setParameter("tag", tag);
+        }
+        if (dateStart != null) {
+            q.setParameter("dateStart", dateStart);
+        }
+        if (dateEnd != null) {
+            q.setParameter("dateEnd", dateEnd);
+        }
+        return q;
+    }
+
+    private static boolean isBlank(String value) {
+        return value == null || value.trim().isEmpty();
+    }
+}
@@ -0,0 +1,36 @@
+package run.gastos.model;
+
+import java.time.LocalDate;
+import java.util.List;
+
+public class DespesaPage {
+    private List<Despesa> items;
+    private String nextCursor;
+
+    public DespesaPage(List<Despesa> items, String nextCursor) {
+        this.items = items;
+        this.nextCursor = nextCursor;
+    }
+
+    public List<Despesa> getItems() {
+        return items;
+    }
+
+    // Nulo quando não há mais páginas
+    public String getNextCursor() {
+        return nextCursor;
+    }
+
+    // Cursor no formato "yyyy-MM-dd:id" da última despesa da página
+    public static String cursorOf(Despesa last) {
+        return last.getDate() + ":" + last.id;
+    }
+
+    public static LocalDate cursorDate(String cursor) {
+        return cursor == null ? null : LocalDate.parse(cursor.substring(0, cursor.indexOf(':')));
+    }
+
+    public static Long cursorId(String cursor) {
+        return cursor == null ? null : Long.parseLong(cursor.substring(cursor.indexOf(':') + 1));
+    }
+}
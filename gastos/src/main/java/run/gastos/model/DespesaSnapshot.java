@@ -0,0 +1,15 @@
+package run.gastos.model;
+
+import java.time.LocalDate;
+
+/**
+ * Cópia imutável dos campos de uma Despesa que alimentam os agregados (saldo, rollups).
+ * Usada para comparar o estado anterior e o novo numa atualização.
+ */
+public record DespesaSnapshot(Long idUser, long amountCents, Despesa.operations operation, String tag, LocalDate date) {
+
+    // Valor com sinal usado no saldo, em centavos: C soma, D subtrai
+    public long signedCents() {
+        return operation == Despesa.operations.C ? amountCents : -amountCents;
+    }
+}
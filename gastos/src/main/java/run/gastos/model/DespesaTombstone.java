@@ -0,0 +1,47 @@
+package run.gastos.model;
+
+import io.quarkus.hibernate.reactive.panache.PanacheEntityBase;
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.Index;
+import jakarta.persistence.Table;
+
+/**
+ * Registro de uma despesa removida, para que /despesas/changes consiga informar deletes.
+ */
+@Entity
+@Table(name = "despesa_tombstone", indexes = {
+    @Index(name = "idx_tombstone_user_change", columnList = "idUser, changeSeq")
+})
+public class DespesaTombstone extends PanacheEntityBase {
+
+    // Mesmo id da despesa removida
+    @Id
+    private Long id;
+
+    @Column(nullable = false)
+    private Long idUser;
+
+    @Column(nullable = false)
+    private Long changeSeq;
+
+    public DespesaTombstone() {}
+    public DespesaTombstone(Long id, Long idUser, Long changeSeq) {
+        this.id = id;
+        this.idUser = idUser;
+        this.changeSeq = changeSeq;
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public Long getIdUser() {
+        return idUser;
+    }
+
+    public Long getChangeSeq() {
+        return changeSeq;
+    }
+}
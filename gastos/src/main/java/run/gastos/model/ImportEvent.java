@@ -0,0 +1,59 @@
+package run.gastos.model;
+
+/**
+ * Linha do stream NDJSON de /gastos/despesas/import: progresso a cada lote gravado, erros por
+ * linha (até o limite configurado) e o resumo final.
+ */
+public class ImportEvent {
+
+    public static final String PROGRESS = "progress";
+    public static final String ERROR = "error";
+    public static final String DONE = "done";
+
+    private String type;
+    private Integer row;
+    private String message;
+    private long imported;
+    private long failed;
+
+    public ImportEvent() {}
+    public ImportEvent(String type, Integer row, String message, long imported, long failed) {
+        this.type = type;
+        this.row = row;
+        this.message = message;
+        this.imported = imported;
+        this.failed = failed;
+    }
+
+    public static ImportEvent progress(long imported, long failed) {
+        return new ImportEvent(PROGRESS, null, null, imported, failed);
+    }
+
+    public static ImportEvent error(Integer row, String message, long imported, long failed) {
+        return new ImportEvent(ERROR, row, message, imported, failed);
+    }
+
+    public static ImportEvent done(long imported, long failed) {
+        return new ImportEvent(DONE, null, null, imported, failed);
+    }
+
+    public String getType() {
+        return type;
+    }
+
+    public Integer getRow() {
+        return row;
+    }
+
+    public String getMessage() {
+        return message;
+    }
+
+    public long getImported() {
+        return imported;
+    }
+
+    public long getFailed() {
+        return failed;
+    }
+}
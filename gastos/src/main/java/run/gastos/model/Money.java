@@ -0,0 +1,27 @@
+package run.gastos.model;
+
+import java.math.BigDecimal;
+
+/**
+ * Valores monetários em centavos (long). Somas e agregados trabalham só com inteiros; o valor
+ * decimal existe apenas na fronteira da API, convertido sem passar por ponto flutuante.
+ */
+public final class Money {
+
+    private static final int SCALE = 2;
+
+    private Money() {}
+
+    public static BigDecimal toDecimal(long cents) {
+        return BigDecimal.valueOf(cents, SCALE);
+    }
+
+    /**
+     * Converte um valor decimal da API (ex.: 10.5) em centavos.
+     *
+     * @throws ArithmeticException se o valor tiver frações de centavo ou não couber em long
+     */
+    public static long toCents(BigDecimal amount) {
+        return amount.movePointRight(SCALE).longValueExact();
+    }
+}
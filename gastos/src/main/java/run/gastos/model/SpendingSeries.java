@@ -0,0 +1,174 @@
+package run.gastos.model;
+
+import java.math.BigDecimal;
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.time.temporal.ChronoUnit;
+import java.time.temporal.TemporalAdjusters;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import io.quarkus.hibernate.reactive.panache.Panache;
+import io.smallrye.mutiny.Uni;
+
+/**
+ * Totais de crédito e débito por dia, semana (ISO, começando na segunda) ou mês num intervalo,
+ * opcionalmente por tag. A soma é feita no banco, agrupada pela data; semanas são montadas
+ * juntando os grupos diários. Sem tag, todos os buckets do intervalo aparecem (zerados se vazios).
+ */
+public class SpendingSeries {
+
+    public enum Granularity {
+        DAY, WEEK, MONTH;
+
+        // Início do bucket que contém a data
+        LocalDate bucketOf(LocalDate date) {
+            return switch (this) {
+                case DAY -> date;
+                case WEEK -> date.with(TemporalAdjusters.previousOrSame(DayOfWeek.MONDAY));
+                case MONTH -> date.withDayOfMonth(1);
+            };
+        }
+
+        LocalDate next(LocalDate bucket) {
+            return switch (this) {
+                case DAY -> bucket.plusDays(1);
+                case WEEK -> bucket.plusWeeks(1);
+                case MONTH -> bucket.plusMonths(1);
+            };
+        }
+
+        public long bucketCount(LocalDate start, LocalDate end) {
+            return switch (this) {
+                case DAY -> ChronoUnit.DAYS.between(start, end) + 1;
+                case WEEK -> ChronoUnit.WEEKS.between(bucketOf(start), bucketOf(end)) + 1;
+                case MONTH -> ChronoUnit.MONTHS.between(YearMonth.from(start), YearMonth.from(end)) + 1;
+            };
+        }
+    }
+
+    // Variantes pré-montadas: [por mês][por tag]
+    private static final String[][] QUERIES = new String[2][2];
+
+    static {
+        for (int monthly = 0; monthly < 2; monthly++) {
+            for (int byTag = 0; byTag < 2; byTag++) {
+                String bucket = monthly == 1 ? "year(d.date) * 100 + month(d.date)" : "d.date";
+                String tag = byTag == 1 ? ", d.tag" : "";
+                QUERIES[monthly][byTag] = "SELECT " + bucket + ", d.operation" + tag + ", COALESCE(SUM(d.amountCents), 0) " +
+                    "FROM Despesa d WHERE d.idUser = :userId AND d.date >= :dateStart AND d.date <= :dateEnd " +
+                    "GROUP BY " + bucket + ", d.operation" + tag;
+            }
+        }
+    }
+
+    private String granularity;
+    private LocalDate dateStart;
+    private LocalDate dateEnd;
+    private List<Bucket> buckets;
+
+    public SpendingSeries() {}
+    public SpendingSeries(Granularity granularity, LocalDate dateStart, LocalDate dateEnd, List<Bucket> buckets) {
+        this.granularity = granularity.name().toLowerCase();
+        this.dateStart = dateStart;
+        this.dateEnd = dateEnd;
+        this.buckets = buckets;
+    }
+
+    public String getGranularity() {
+        return granularity;
+    }
+
+    public LocalDate getDateStart() {
+        return dateStart;
+    }
+
+    public LocalDate getDateEnd() {
+        return dateEnd;
+    }
+
+    public List<Bucket> getBuckets() {
+        return buckets;
+    }
+
+    public static Uni<SpendingSeries> load(Long userId, Granularity granularity, LocalDate dateStart, LocalDate dateEnd, boolean byTag) {
+        String query = QUERIES[granularity == Granularity.MONTH ? 1 : 0][byTag ? 1 : 0];
+
+        return Panache.getSession()
+            .onItem().transformToUni(session -> session.createSelectionQuery(query, Object[].class)
+                .setParameter("userId", userId)
+                .setParameter("dateStart", dateStart)
+                .setParameter("dateEnd", dateEnd)
+                .setReadOnly(true)
+                .getResultList())
+            .onItem().transform(rows -> {
+                Map<BucketKey, Bucket> buckets = new LinkedHashMap<>();
+                if (!byTag) {
+                    for (LocalDate b = granularity.bucketOf(dateStart); !b.isAfter(dateEnd); b = granularity.next(b)) {
+                        buckets.put(new BucketKey(b, null), new Bucket(b, null));
+                    }
+                }
+                for (Object[] row : rows) {
+                    LocalDate date = granularity == Granularity.MONTH
+                        ? LocalDate.of(((Number) row[0]).intValue() / 100, ((Number) row[0]).intValue() % 100, 1)
+                        : granularity.bucketOf((LocalDate) row[0]);
+                    String tag = byTag ? (String) row[2] : null;
+                    long cents = ((Number) row[byTag ? 3 : 2]).longValue();
+                    Bucket bucket = buckets.computeIfAbsent(new BucketKey(date, tag), key -> new Bucket(key.start(), key.tag()));
+                    if (row[1] == Despesa.operations.C) {
+                        bucket.creditCents += cents;
+                    } else {
+                        bucket.debitCents += cents;
+                    }
+                }
+                List<Bucket> result = new ArrayList<>(buckets.values());
+                if (byTag) {
+                    result.sort((a, b) -> a.start.compareTo(b.start));
+                }
+                return new SpendingSeries(granularity, dateStart, dateEnd, result);
+            });
+    }
+
+    private record BucketKey(LocalDate start, String tag) {}
+
+    public static class Bucket {
+        private LocalDate start;
+        private String tag;
+        private long creditCents;
+        private long debitCents;
+
+        public Bucket() {}
+        public Bucket(LocalDate start, String tag) {
+            this.start = start;
+            this.tag = tag;
+        }
+
+        public LocalDate getStart() {
+            return start;
+        }
+
+        public String getTag() {
+            return tag;
+        }
+
+        public long getCreditCents() {
+            return creditCents;
+        }
+
+        public long getDebitCents() {
+            return debitCents;
+        }
+
+        // Valores decimais exatos, como nas demais respostas
+        public BigDecimal getCredit() {
+            return Money.toDecimal(creditCents);
+        }
+
+        public BigDecimal getDebit() {
+            return Money.toDecimal(debitCents);
+        }
+    }
+}
@@ -0,0 +1,172 @@
+package run.gastos.model;
+
+import java.io.Serializable;
+import java.time.YearMonth;
+import java.util.List;
+import java.util.Objects;
+
+import io.quarkus.hibernate.reactive.panache.Panache;
+import io.quarkus.hibernate.reactive.panache.PanacheEntityBase;
+import io.smallrye.mutiny.Uni;
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.IdClass;
+import jakarta.persistence.Table;
+
+/**
+ * Total mensal por (usuário, mês, tag, operação), mantido a cada escrita de Despesa.
+ * O /gastos/por-tags soma estes totais para os meses inteiros do intervalo e só vai às
+ * despesas nas bordas de mês parcial.
+ */
+@Entity
+@Table(name = "tag_rollup")
+@IdClass(TagRollup.Key.class)
+public class TagRollup extends PanacheEntityBase {
+
+    @Id
+    @Column(name = "idUser")
+    private Long idUser;
+
+    // Ano e mês no formato yyyyMM (ex.: 202511)
+    @Id
+    @Column(name = "yearMonth")
+    private Integer yearMonth;
+
+    // Despesas sem tag são guardadas com tag vazia, já que a coluna faz parte da chave
+    @Id
+    @Column(name = "tag", length = 255)
+    private String tag;
+
+    @Id
+    @Column(name = "operation")
+    private Despesa.operations operation;
+
+    // Total em centavos; a coluna decimal antiga (total) é migrada por MoneyMigration
+    @Column(name = "totalCents", nullable = false)
+    private long totalCents;
+
+    public TagRollup() {}
+
+    public Long getIdUser() {
+        return idUser;
+    }
+
+    public Integer getYearMonth() {
+        return yearMonth;
+    }
+
+    public String getTag() {
+        return tag;
+    }
+
+    public Despesa.operations getOperation() {
+        return operation;
+    }
+
+    public long getTotalCents() {
+        return totalCents;
+    }
+
+    public static int yearMonthOf(YearMonth ym) {
+        return ym.getYear() * 100 + ym.getMonthValue();
+    }
+
+    public static String keyTag(String tag) {
+        return tag == null ? "" : tag;
+    }
+
+    public static String fromKeyTag(String tag) {
+        return tag == null || tag.isEmpty() ? null : tag;
+    }
+
+    /**
+     * Soma {@code delta} ao total do mês/tag/operação da despesa, criando a linha se preciso.
+     */
+    public static Uni<Void> add(Long userId, YearMonth ym, String tag, Despesa.operations operation, long delta) {
+        if (delta == 0) {
+            return Uni.createFrom().voidItem();
+        }
+        return Panache.getSession()
+            .onItem().transformToUni(session ->
+                session.createMutationQuery(
+                        "INSERT INTO TagRollup (idUser, yearMonth, tag, operation, totalCents) " +
+                        "VALUES (:userId, :yearMonth, :tag, :operation, :delta) " +
+                        "ON CONFLICT (idUser, yearMonth, tag, operation) DO UPDATE SET totalCents = totalCents + excluded.totalCents")
+                    .setParameter("userId", userId)
+                    .setParameter("yearMonth", yearMonthOf(ym))
+                    .setParameter("tag", keyTag(tag))
+                    .setParameter("operation", operation)
+                    .setParameter("delta", delta)
+                    .executeUpdate()
+            )
+            .replaceWithVoid();
+    }
+
+    /**
+     * Garante que o rollup do usuário cobre todo o histórico antes de uma leitura. Na primeira
+     * vez reconstrói a partir das despesas; depois é uma leitura por chave primária.
+     */
+    public static Uni<Void> ensureSeeded(Long userId) {
+        return TagRollupSeed.isSeeded(userId)
+            .chain(seeded -> seeded ? Uni.createFrom().voidItem() : Panache.withTransaction(() -> Panache.getSession()
+                // Mesma ordem de travamento das escritas: versão do usuário antes do rollup
+                .chain(session -> session.createNativeQuery("SELECT idUser FROM user_data_version WHERE idUser = :userId FOR UPDATE")
+                    .setParameter("userId", userId)
+                    .getResultList())
+                // Outra leitura pode ter semeado enquanto esta esperava a trava
+                .chain(() -> TagRollupSeed.isSeeded(userId))
+                .chain(again -> again ? Uni.createFrom().voidItem() : rebuild(List.of(userId)).replaceWithVoid())));
+    }
+
+    /**
+     * Recria os rollups dos usuários informados a partir das despesas (backfill / reparo).
+     */
+    public static Uni<Integer> rebuild(List<Long> userIds) {
+        if (userIds.isEmpty()) {
+            return Uni.createFrom().item(0);
+        }
+        return Panache.getSession()
+            .onItem().transformToUni(session ->
+                session.createMutationQuery("DELETE FROM TagRollup r WHERE r.idUser IN :userIds")
+                    .setParameter("userIds", userIds)
+                    .executeUpdate()
+                    .chain(() -> session.createMutationQuery(
+                            "INSERT INTO TagRollup (idUser, yearMonth, tag, operation, totalCents) " +
+                            "SELECT d.idUser, year(d.date) * 100 + month(d.date), coalesce(d.tag, ''), d.operation, SUM(d.amountCents) " +
+                            "FROM Despesa d WHERE d.idUser IN :userIds " +
+                            "GROUP BY d.idUser, year(d.date) * 100 + month(d.date), coalesce(d.tag, ''), d.operation")
+                        .setParameter("userIds", userIds)
+                        .executeUpdate())
+                    // Checkpoints de saldo derivam do rollup: recalcula todo o histórico desses usuários
+                    .call(() -> BalanceCheckpointDirty.markAll(userIds))
+                    .call(() -> TagRollupSeed.markSeeded(userIds))
+            );
+    }
+
+    public static class Key implements Serializable {
+        public Long idUser;
+        public Integer yearMonth;
+        public String tag;
+        public Despesa.operations operation;
+
+        public Key() {}
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Key other)) {
+                return false;
+            }
+            return Objects.equals(idUser, other.idUser) && Objects.equals(yearMonth, other.yearMonth)
+                && Objects.equals(tag, other.tag) && operation == other.operation;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(idUser, yearMonth, tag, operation);
+        }
+    }
+}
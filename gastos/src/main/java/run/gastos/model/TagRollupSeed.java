@@ -0,0 +1,46 @@
+package run.gastos.model;
+
+import java.util.List;
+
+import io.quarkus.hibernate.reactive.panache.Panache;
+import io.quarkus.hibernate.reactive.panache.PanacheEntityBase;
+import io.smallrye.mutiny.Uni;
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+
+/**
+ * Usuários cujo rollup mensal por tag já foi montado a partir das despesas. Sem a linha, o
+ * rollup pode estar vazio ou parcial (histórico anterior ao rollup) e é reconstruído na
+ * primeira leitura, do mesmo jeito que o user_balance se semeia.
+ */
+@Entity
+@Table(name = "tag_rollup_seed")
+public class TagRollupSeed extends PanacheEntityBase {
+
+    @Id
+    @Column(name = "idUser")
+    private Long idUser;
+
+    public TagRollupSeed() {}
+
+    public Long getIdUser() {
+        return idUser;
+    }
+
+    static Uni<Boolean> isSeeded(Long userId) {
+        return TagRollupSeed.<TagRollupSeed>findById(userId).onItem().transform(row -> row != null);
+    }
+
+    static Uni<Void> markSeeded(List<Long> userIds) {
+        Uni<Void> inserts = Uni.createFrom().voidItem();
+        for (Long userId : userIds) {
+            inserts = inserts.call(() -> Panache.getSession()
+                .chain(session -> session.createNativeQuery("INSERT IGNORE INTO tag_rollup_seed (idUser) VALUES (:userId)")
+                    .setParameter("userId", userId)
+                    .executeUpdate()));
+        }
+        return inserts;
+    }
+}
@@ -1,43 +1,111 @@
 package run.gastos.model;
 
+import java.math.BigDecimal;
 import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
-import java.util.stream.Collectors;
+import java.util.Map;
+
+import io.smallrye.mutiny.Uni;
 
 public class TagSum {
     private String tag;
-    private Double total;
+    private long totalCents;
 
-    public TagSum(String tag, Double total) {
+    public TagSum(String tag, long totalCents) {
         this.tag = tag;
-        this.total = total;
+        this.totalCents = totalCents;
     }
 
     public String getTag() {
         return tag;
     }
 
-    public Double getTotal() {
-        return total;
+    public long getTotalCents() {
+        return totalCents;
+    }
+
+    // Valor decimal exato, mantido no JSON para clientes que ainda leem "total"
+    public BigDecimal getTotal() {
+        return Money.toDecimal(totalCents);
     }
 
-    public static io.smallrye.mutiny.Uni<List<TagSum>> getTagsByUserId(Long userId, String dateStart, String dateEnd) {
-        // Retorna apenas soma de valores com operação C (Crédito/Saída)
-        StringBuilder queryBuilder = new StringBuilder(
-            "SELECT d.tag, COALESCE(SUM(d.amount), 0) " +
-            "FROM Despesa d WHERE d.idUser = :userId AND d.operation = D"
-        );
+    // Variantes pré-montadas indexadas por (limite inicial presente | limite final presente << 1)
+    private static final String[] ROLLUP_QUERIES = new String[4];
+    private static final String[] RAW_QUERIES = new String[4];
 
-        if (dateStart != null) {
-            queryBuilder.append(" AND d.date >= :dateStart");
+    static {
+        for (int mask = 0; mask < 4; mask++) {
+            ROLLUP_QUERIES[mask] = "SELECT r.tag, COALESCE(SUM(r.totalCents), 0) " +
+                "FROM TagRollup r WHERE r.idUser = :userId AND r.operation = D" +
+                ((mask & 1) != 0 ? " AND r.yearMonth >= :from" : "") +
+                ((mask & 2) != 0 ? " AND r.yearMonth <= :to" : "") +
+                " GROUP BY r.tag";
+            RAW_QUERIES[mask] = "SELECT d.tag, COALESCE(SUM(d.amountCents), 0) " +
+                "FROM Despesa d WHERE d.idUser = :userId AND d.operation = D" +
+                ((mask & 1) != 0 ? " AND d.date >= :dateStart" : "") +
+                ((mask & 2) != 0 ? " AND d.date <= :dateEnd" : "") +
+                " GROUP BY d.tag";
         }
-        if (dateEnd != null) {
-            queryBuilder.append(" AND d.date <= :dateEnd");
+    }
+
+    public static io.smallrye.mutiny.Uni<List<TagSum>> getTagsByUserId(Long userId, LocalDate start, LocalDate end) {
+
+        // Meses inteiramente cobertos pelo intervalo saem do rollup; nulo = sem limite
+        YearMonth firstFull = start == null ? null
+            : start.getDayOfMonth() == 1 ? YearMonth.from(start) : YearMonth.from(start).plusMonths(1);
+        YearMonth lastFull = end == null ? null
+            : end.equals(YearMonth.from(end).atEndOfMonth()) ? YearMonth.from(end) : YearMonth.from(end).minusMonths(1);
+
+        if (firstFull != null && lastFull != null && firstFull.isAfter(lastFull)) {
+            // Intervalo não cobre nenhum mês inteiro: consulta direta nas despesas
+            return rawSums(userId, start, end).onItem().transform(TagSum::toList);
         }
 
-        queryBuilder.append(" GROUP BY d.tag");
+        Map<String, long[]> totals = new HashMap<>();
+        // Histórico anterior ao rollup é montado na primeira leitura do usuário
+        Uni<Void> chain = TagRollup.ensureSeeded(userId)
+            .chain(() -> rollupSums(userId, firstFull, lastFull))
+            .invoke(sums -> merge(totals, sums)).replaceWithVoid();
+        if (start != null && start.getDayOfMonth() != 1) {
+            // Borda inicial: do dia pedido até o fim do mês
+            chain = chain.chain(() -> rawSums(userId, start, YearMonth.from(start).atEndOfMonth()))
+                .invoke(sums -> merge(totals, sums)).replaceWithVoid();
+        }
+        if (end != null && !end.equals(YearMonth.from(end).atEndOfMonth())) {
+            // Borda final: do primeiro dia do mês até o dia pedido
+            chain = chain.chain(() -> rawSums(userId, YearMonth.from(end).atDay(1), end))
+                .invoke(sums -> merge(totals, sums)).replaceWithVoid();
+        }
+        return chain.onItem().transform(v -> toList(totals));
+    }
+
+    // Retorna apenas soma de valores com operação D (Débito)
+    private static Uni<Map<String, long[]>> rollupSums(Long userId, YearMonth from, YearMonth to) {
+        String query = ROLLUP_QUERIES[(from != null ? 1 : 0) | (to != null ? 2 : 0)];
+
+        return io.quarkus.hibernate.reactive.panache.Panache.getSession()
+            .onItem().transformToUni(session -> {
+                var q = session.createQuery(query, Object[].class)
+                    .setParameter("userId", userId);
+
+                if (from != null) {
+                    q.setParameter("from", TagRollup.yearMonthOf(from));
+                }
+                if (to != null) {
+                    q.setParameter("to", TagRollup.yearMonthOf(to));
+                }
+
+                return q.getResultList();
+            })
+            .onItem().transform(rows -> toMap(rows, true));
+    }
 
-        String query = queryBuilder.toString();
+    private static Uni<Map<String, long[]>> rawSums(Long userId, LocalDate dateStart, LocalDate dateEnd) {
+        // Retorna apenas soma de valores com operação D (Débito)
+        String query = RAW_QUERIES[(dateStart != null ? 1 : 0) | (dateEnd != null ? 2 : 0)];
 
         return io.quarkus.hibernate.reactive.panache.Panache.getSession()
             .onItem().transformToUni(session -> {
@@ -45,22 +113,39 @@ public class TagSum {
                     .setParameter("userId", userId);
 
                 if (dateStart != null) {
-                    q.setParameter("dateStart", LocalDate.parse(dateStart));
+                    q.setParameter("dateStart", dateStart);
                 }
                 if (dateEnd != null) {
-                    q.setParameter("dateEnd", LocalDate.parse(dateEnd));
+                    q.setParameter("dateEnd", dateEnd);
                 }
 
                 return q.getResultList();
             })
-            .onItem().transform(rows -> rows.stream()
-                .map(arr -> {
-                    String tag = (String) arr[0];
-                    Number n = (Number) arr[1];
-                    Double total = n == null ? 0.0 : n.doubleValue();
-                    return new TagSum(tag, total);
-                })
-                .collect(Collectors.toList())
-            );
+            .onItem().transform(rows -> toMap(rows, false));
+    }
+
+    // Totais em centavos num acumulador long[1] por tag, sem um Long novo a cada soma
+    private static Map<String, long[]> toMap(List<Object[]> rows, boolean rollupTags) {
+        Map<String, long[]> sums = new HashMap<>();
+        for (Object[] arr : rows) {
+            String tag = rollupTags ? TagRollup.fromKeyTag((String) arr[0]) : (String) arr[0];
+            long cents = arr[1] == null ? 0 : ((Number) arr[1]).longValue();
+            if (rollupTags && cents == 0) {
+                // Linhas de rollup zeradas por remoções não aparecem no resultado
+                continue;
+            }
+            sums.computeIfAbsent(tag, t -> new long[1])[0] += cents;
+        }
+        return sums;
+    }
+
+    private static void merge(Map<String, long[]> totals, Map<String, long[]> sums) {
+        sums.forEach((tag, total) -> totals.computeIfAbsent(tag, t -> new long[1])[0] += total[0]);
+    }
+
+    private static List<TagSum> toList(Map<String, long[]> totals) {
+        List<TagSum> result = new ArrayList<>(totals.size());
+        totals.forEach((tag, total) -> result.add(new TagSum(tag, total[0])));
+        return result;
     }
-}
\ No newline at end of file
+}
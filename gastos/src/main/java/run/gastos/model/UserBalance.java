@@ -0,0 +1,168 @@
+package run.gastos.model;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import io.quarkus.hibernate.reactive.panache.Panache;
+import io.quarkus.hibernate.reactive.panache.PanacheEntityBase;
+import io.smallrye.mutiny.Uni;
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+
+/**
+ * Saldo consolidado por usuário, mantido na mesma transação das escritas de Despesa.
+ * O GET /gastos/saldo vira uma leitura por chave primária em vez de somar todo o histórico.
+ */
+@Entity
+@Table(name = "user_balance")
+public class UserBalance extends PanacheEntityBase {
+
+    @Id
+    @Column(name = "idUser")
+    private Long idUser;
+
+    // Saldo em centavos; a coluna decimal antiga (saldo) é migrada por MoneyMigration
+    @Column(name = "saldoCents", nullable = false)
+    private long saldoCents;
+
+    public UserBalance() {}
+    public UserBalance(Long idUser, long saldoCents) {
+        this.idUser = idUser;
+        this.saldoCents = saldoCents;
+    }
+
+    public Long getIdUser() {
+        return idUser;
+    }
+
+    public long getSaldoCents() {
+        return saldoCents;
+    }
+    public void setSaldoCents(long saldoCents) {
+        this.saldoCents = saldoCents;
+    }
+
+    /**
+     * Soma {@code delta} ao saldo do usuário. Se a linha ainda não existe (usuário com histórico
+     * anterior ao ledger), ela é semeada com a soma completa das despesas, que já inclui a
+     * alteração corrente porque a Despesa foi "flushada" antes.
+     */
+    public static Uni<Void> applyDelta(Long userId, long delta) {
+        if (delta == 0) {
+            return Uni.createFrom().voidItem();
+        }
+        return Panache.getSession()
+            .onItem().transformToUni(session ->
+                session.createMutationQuery("UPDATE UserBalance b SET b.saldoCents = b.saldoCents + :delta WHERE b.idUser = :userId")
+                    .setParameter("delta", delta)
+                    .setParameter("userId", userId)
+                    .executeUpdate()
+            )
+            .onItem().transformToUni(updated -> updated > 0
+                ? Uni.createFrom().voidItem()
+                : Panache.getSession()
+                    .chain(session -> session.flush())
+                    .chain(() -> Despesa.calculateSaldoByUserId(userId))
+                    .chain(seed -> insertOrAdd(userId, seed, delta)));
+    }
+
+    /**
+     * Lê o saldo do ledger; na ausência da linha calcula a partir das despesas e semeia o ledger.
+     */
+    public static Uni<Long> findSaldo(Long userId) {
+        return UserBalance.<UserBalance>findById(userId)
+            .onItem().transformToUni(balance -> balance != null
+                ? Uni.createFrom().item(balance.getSaldoCents())
+                : Despesa.calculateSaldoByUserId(userId)
+                    .call(seed -> insertOrAdd(userId, seed, 0)));
+    }
+
+    /**
+     * Recalcula o saldo dos usuários informados e corrige as linhas divergentes.
+     * As linhas do ledger são travadas antes da soma para que escritas concorrentes
+     * apliquem seu delta depois da correção, e não sejam sobrescritas por ela.
+     * Retorna os usuários corrigidos, cujo cache deve ser invalidado depois do commit.
+     */
+    public static Uni<List<Long>> reconcile(List<Long> userIds) {
+        if (userIds.isEmpty()) {
+            return Uni.createFrom().item(List.of());
+        }
+        String query = "SELECT d.idUser, COALESCE(SUM(CASE WHEN d.operation = run.gastos.model.Despesa$operations.C THEN d.amountCents " +
+                       "WHEN d.operation = run.gastos.model.Despesa$operations.D THEN -d.amountCents ELSE 0 END), 0) " +
+                       "FROM Despesa d WHERE d.idUser IN :userIds GROUP BY d.idUser";
+        return Panache.getSession()
+            .onItem().transformToUni(session ->
+                // Mesma ordem de travamento das escritas: versão do usuário antes do ledger
+                session.createNativeQuery("SELECT idUser FROM user_data_version WHERE idUser IN (:userIds) FOR UPDATE")
+                    .setParameter("userIds", userIds)
+                    .getResultList()
+                    .chain(() -> session.createNativeQuery("SELECT idUser FROM user_balance WHERE idUser IN (:userIds) FOR UPDATE")
+                        .setParameter("userIds", userIds)
+                        .getResultList())
+                    .onItem().transformToUni(locked ->
+                        session.createQuery(query, Object[].class)
+                            .setParameter("userIds", userIds)
+                            .getResultList()
+                    )
+                    .onItem().transformToUni(rows -> {
+                        Map<Long, Long> expected = new HashMap<>();
+                        for (Long userId : userIds) {
+                            expected.put(userId, 0L);
+                        }
+                        for (Object[] row : rows) {
+                            expected.put((Long) row[0], ((Number) row[1]).longValue());
+                        }
+                        return session.createQuery("SELECT b FROM UserBalance b WHERE b.idUser IN :userIds", UserBalance.class)
+                            .setParameter("userIds", userIds)
+                            .getResultList()
+                            .onItem().transform(balances -> {
+                                List<Long> fixed = new ArrayList<>();
+                                for (UserBalance balance : balances) {
+                                    long saldo = expected.remove(balance.getIdUser());
+                                    // Centavos inteiros: comparação exata, sem tolerância
+                                    if (balance.getSaldoCents() != saldo) {
+                                        balance.setSaldoCents(saldo);
+                                        fixed.add(balance.getIdUser());
+                                    }
+                                }
+                                return fixed;
+                            })
+                            .call(fixed -> session.flush())
+                            .call(fixed -> {
+                                // O saldo visível mudou: invalida os ETags desses usuários
+                                Uni<Void> bumps = Uni.createFrom().voidItem();
+                                for (Long userId : fixed) {
+                                    bumps = bumps.call(() -> UserDataVersion.bump(userId).replaceWithVoid());
+                                }
+                                return bumps;
+                            })
+                            .call(fixed -> {
+                                // Usuários que só têm despesas e ainda não possuem linha no ledger
+                                Uni<Void> inserts = Uni.createFrom().voidItem();
+                                for (Map.Entry<Long, Long> missing : expected.entrySet()) {
+                                    inserts = inserts.call(() -> insertOrAdd(missing.getKey(), missing.getValue(), 0));
+                                }
+                                return inserts;
+                            });
+                    })
+            );
+    }
+
+    private static Uni<Void> insertOrAdd(Long userId, long seed, long delta) {
+        // Se outra transação criou a linha nesse meio tempo, aplica apenas o delta
+        return Panache.getSession()
+            .onItem().transformToUni(session ->
+                session.createNativeQuery("INSERT INTO user_balance (idUser, saldoCents) VALUES (:userId, :seed) " +
+                                          "ON DUPLICATE KEY UPDATE saldoCents = saldoCents + :delta")
+                    .setParameter("userId", userId)
+                    .setParameter("seed", seed)
+                    .setParameter("delta", delta)
+                    .executeUpdate()
+            )
+            .replaceWithVoid();
+    }
+}
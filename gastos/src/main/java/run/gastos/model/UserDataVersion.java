@@ -0,0 +1,59 @@
+package run.gastos.model;
+
+import io.quarkus.hibernate.reactive.panache.Panache;
+import io.quarkus.hibernate.reactive.panache.PanacheEntityBase;
+import io.smallrye.mutiny.Uni;
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+
+/**
+ * Versão dos dados de cada usuário, incrementada na transação de toda escrita de Despesa.
+ * Os ETags das leituras (list, por-tags, saldo) saem daqui, então um GET condicional
+ * responde 304 com uma leitura por chave primária.
+ */
+@Entity
+@Table(name = "user_data_version")
+public class UserDataVersion extends PanacheEntityBase {
+
+    @Id
+    @Column(name = "idUser")
+    private Long idUser;
+
+    @Column(name = "version", nullable = false)
+    private long version;
+
+    public UserDataVersion() {}
+
+    public Long getIdUser() {
+        return idUser;
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    // Usuário sem linha ainda não teve escrita desde que o versionamento existe: versão 0
+    public static Uni<Long> current(Long userId) {
+        return UserDataVersion.<UserDataVersion>findById(userId)
+            .onItem().transform(row -> row != null ? row.getVersion() : 0L);
+    }
+
+    /**
+     * Incrementa a versão e devolve o novo valor. A linha fica travada até o fim da transação,
+     * então escritas do mesmo usuário recebem números na ordem em que fazem commit.
+     */
+    public static Uni<Long> bump(Long userId) {
+        return Panache.getSession()
+            .onItem().transformToUni(session ->
+                session.createNativeQuery("INSERT INTO user_data_version (idUser, version) VALUES (:userId, 1) " +
+                                          "ON DUPLICATE KEY UPDATE version = version + 1")
+                    .setParameter("userId", userId)
+                    .executeUpdate()
+                    .chain(() -> session.createNativeQuery("SELECT version FROM user_data_version WHERE idUser = :userId", Long.class)
+                        .setParameter("userId", userId)
+                        .getSingleResult())
+            );
+    }
+}
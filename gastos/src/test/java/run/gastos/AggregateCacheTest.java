@@ -0,0 +1,94 @@
+package run.gastos;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import io.smallrye.mutiny.Uni;
+import io.smallrye.mutiny.subscription.UniEmitter;
+
+/**
+ * Invalidação por usuário quando leituras concorrentes enchem e substituem a mesma chave.
+ */
+class AggregateCacheTest {
+
+    private AggregateCache cache;
+    private final List<UniEmitter<? super String>> pending = new ArrayList<>();
+    private final AtomicInteger loads = new AtomicInteger();
+
+    @BeforeEach
+    void setUp() {
+        cache = new AggregateCache();
+        cache.enabled = true;
+        cache.maximumSize = 100;
+        cache.ttl = Duration.ofMinutes(1);
+        cache.init();
+    }
+
+    // Loader que só completa quando o teste mandar, para intercalar leituras e escritas
+    private void startRead(Long userId) {
+        cache.<String>get(userId, "saldo", () -> {
+            loads.incrementAndGet();
+            return Uni.createFrom().emitter(pending::add);
+        }).subscribe().with(value -> {});
+    }
+
+    private String readNow(Long userId, String loaded) {
+        List<String> result = new ArrayList<>();
+        cache.<String>get(userId, "saldo", () -> {
+            loads.incrementAndGet();
+            return Uni.createFrom().item(loaded);
+        }).subscribe().with(result::add);
+        return result.get(0);
+    }
+
+    @Test
+    void replaceKeepsKeyIndexedForInvalidation() {
+        startRead(1L);
+        startRead(1L);
+        pending.get(0).complete("v1");
+        // A segunda leitura substitui a primeira (RemovalCause.REPLACED)
+        pending.get(1).complete("v1'");
+
+        cache.invalidateUser(1L);
+
+        assertEquals("v2", readNow(1L, "v2"));
+        assertEquals(3, loads.get());
+    }
+
+    @Test
+    void writeBetweenFillAndReplaceIsNotCached() {
+        startRead(1L);
+        startRead(1L);
+        pending.get(0).complete("v1");
+        cache.invalidateUser(1L);
+        // Leitura iniciada antes da escrita: não pode repor o valor antigo
+        pending.get(1).complete("v1'");
+
+        assertEquals("v2", readNow(1L, "v2"));
+        assertEquals("v2", readNow(1L, "v3"));
+        assertEquals(3, loads.get());
+
+        cache.invalidateUser(1L);
+
+        assertEquals("v4", readNow(1L, "v4"));
+    }
+
+    @Test
+    void invalidationIsPerUser() {
+        readNow(1L, "a");
+        readNow(2L, "b");
+
+        cache.invalidateUser(1L);
+
+        assertEquals("a2", readNow(1L, "a2"));
+        assertEquals("b", readNow(2L, "b2"));
+        assertEquals(3, loads.get());
+    }
+}
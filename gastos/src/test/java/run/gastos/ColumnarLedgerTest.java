@@ -0,0 +1,67 @@
+package run.gastos;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import org.junit.jupiter.api.Test;
+
+import run.gastos.model.Despesa;
+import run.gastos.model.DespesaSnapshot;
+import run.gastos.model.TagSum;
+
+/**
+ * Confere as somas do ledger colunar contra o cálculo linha a linha.
+ */
+class ColumnarLedgerTest {
+
+    private static DespesaSnapshot row(long amountCents, Despesa.operations op, String tag, String date) {
+        return new DespesaSnapshot(1L, amountCents, op, tag, LocalDate.parse(date));
+    }
+
+    private static Map<String, Long> byTag(List<TagSum> sums) {
+        return sums.stream().collect(Collectors.toMap(TagSum::getTag, TagSum::getTotalCents));
+    }
+
+    private final List<DespesaSnapshot> rows = List.of(
+        row(10010L, Despesa.operations.D, "Lazer", "2025-03-10"),
+        row(250000L, Despesa.operations.C, "Salário", "2025-03-01"),
+        row(4025L, Despesa.operations.D, "Transporte", "2025-02-28"),
+        row(1500L, Despesa.operations.D, "Lazer", "2025-04-02"),
+        row(999L, Despesa.operations.D, "Lazer", "2025-03-31"));
+
+    @Test
+    void saldoAndRangeByTag() {
+        ColumnarLedger ledger = ColumnarLedger.of(7, rows);
+
+        assertEquals(233466L, ledger.saldo());
+        assertEquals(Map.of("Lazer", 11009L), byTag(ledger.debitByTag(LocalDate.parse("2025-03-01"), LocalDate.parse("2025-03-31"))));
+        assertEquals(Map.of("Lazer", 12509L, "Transporte", 4025L), byTag(ledger.debitByTag(null, null)));
+        assertEquals(Map.of(), byTag(ledger.debitByTag(LocalDate.parse("2025-05-01"), null)));
+    }
+
+    @Test
+    void applyMovesRowsBetweenRanges() {
+        ColumnarLedger ledger = ColumnarLedger.of(7, rows);
+
+        ColumnarLedger updated = ledger.apply(8,
+            List.of(row(10010L, Despesa.operations.D, "Lazer", "2025-03-10")),
+            List.of(row(10010L, Despesa.operations.D, "Lazer", "2025-04-10")));
+
+        assertEquals(8, updated.version());
+        assertEquals(ledger.saldo(), updated.saldo());
+        assertEquals(Map.of("Lazer", 999L), byTag(updated.debitByTag(LocalDate.parse("2025-03-01"), LocalDate.parse("2025-03-31"))));
+        assertEquals(Map.of("Lazer", 11510L), byTag(updated.debitByTag(LocalDate.parse("2025-04-01"), null)));
+    }
+
+    @Test
+    void applyRejectsUnknownRow() {
+        ColumnarLedger ledger = ColumnarLedger.of(7, rows);
+
+        assertNull(ledger.apply(8, List.of(row(100L, Despesa.operations.D, "Lazer", "2025-03-10")), List.of()));
+    }
+}
@@ -0,0 +1,88 @@
+package run.gastos;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import run.gastos.DespesaImportParser.Format;
+import run.gastos.DespesaImportParser.ImportRow;
+
+/**
+ * Conversão de linhas de extrato (CSV e OFX) sem banco.
+ */
+class DespesaImportParserTest {
+
+    private static List<ImportRow> parse(Format format, String content) throws IOException {
+        DespesaImportParser parser = DespesaImportParser.of(format, new StringReader(content));
+        List<ImportRow> rows = new ArrayList<>();
+        ImportRow row;
+        while ((row = parser.next()) != null) {
+            rows.add(row);
+        }
+        return rows;
+    }
+
+    @Test
+    void csvWithBrazilianFormats() throws IOException {
+        List<ImportRow> rows = parse(Format.CSV,
+            "Data;Descrição;Valor;Categoria\r\n" +
+            "05/01/2025;\"Mercado; centro\";-1.234,56;Alimentação\r\n" +
+            "\r\n" +
+            "06/01/2025;Salário;5000,00;\n" +
+            "07/01/2025;Erro;abc;Lazer\n");
+
+        assertEquals(3, rows.size());
+        ImportRow debit = rows.get(0);
+        assertNull(debit.error());
+        assertEquals(2, debit.row());
+        assertEquals(LocalDate.of(2025, 1, 5), debit.date());
+        assertEquals(123456L, debit.amountCents());
+        assertEquals("D", debit.operation());
+        assertEquals("Alimentação", debit.tag());
+
+        ImportRow credit = rows.get(1);
+        assertEquals("C", credit.operation());
+        assertEquals(500000L, credit.amountCents());
+        assertNull(credit.tag());
+
+        assertEquals(5, rows.get(2).row());
+        assertNotNull(rows.get(2).error());
+    }
+
+    @Test
+    void csvExplicitOperationAndCents() throws IOException {
+        List<ImportRow> rows = parse(Format.CSV,
+            "date,amountCents,operation,tag\n" +
+            "2025-02-01,1999,D,Transporte\n" +
+            "2025-02-02,10.001,C,\n");
+
+        assertEquals(1999L, rows.get(0).amountCents());
+        assertEquals("D", rows.get(0).operation());
+        assertNotNull(rows.get(1).error());
+    }
+
+    @Test
+    void ofxSgml() throws IOException {
+        List<ImportRow> rows = parse(Format.OFX,
+            "OFXHEADER:100\nDATA:OFXSGML\n\n<OFX><BANKMSGSRSV1><STMTTRNRS><STMTRS><BANKTRANLIST>\n" +
+            "<STMTTRN><TRNTYPE>DEBIT<DTPOSTED>20250110120000[-3:BRT]<TRNAMT>-50.25<FITID>1<MEMO>Farmácia</STMTTRN>\n" +
+            "<STMTTRN>\n<TRNTYPE>CREDIT\n<DTPOSTED>20250111\n<TRNAMT>1200.00\n<FITID>2\n</STMTTRN>\n" +
+            "</BANKTRANLIST></STMTRS></STMTTRNRS></BANKMSGSRSV1></OFX>");
+
+        assertEquals(2, rows.size());
+        assertEquals(LocalDate.of(2025, 1, 10), rows.get(0).date());
+        assertEquals(5025L, rows.get(0).amountCents());
+        assertEquals("D", rows.get(0).operation());
+        assertEquals(120000L, rows.get(1).amountCents());
+        assertEquals("C", rows.get(1).operation());
+        assertNull(rows.get(1).tag());
+    }
+}
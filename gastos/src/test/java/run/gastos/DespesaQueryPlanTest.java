@@ -0,0 +1,120 @@
+package run.gastos;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+
+import io.quarkus.test.junit.QuarkusTest;
+import io.vertx.mutiny.sqlclient.Pool;
+import io.vertx.mutiny.sqlclient.Row;
+import io.vertx.mutiny.sqlclient.RowSet;
+import jakarta.inject.Inject;
+
+/**
+ * Roda EXPLAIN no SQL equivalente a cada consulta de Despesa contra um banco populado
+ * e falha se alguma delas cair em full scan (type = ALL).
+ */
+@QuarkusTest
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+class DespesaQueryPlanTest {
+
+    private static final long FIRST_USER = 900_001L;
+    private static final int USERS = 40;
+    private static final int ROWS_PER_USER = 100;
+    private static final String[] TAGS = {"Alimentação", "Transporte", "Lazer", "Outros"};
+
+    @Inject
+    Pool client;
+
+    @BeforeAll
+    void seed() {
+        client.query("DELETE FROM Despesa WHERE idUser >= " + FIRST_USER).execute().await().indefinitely();
+        long id = 900_000_000L;
+        LocalDate base = LocalDate.of(2024, 1, 1);
+        for (int u = 0; u < USERS; u++) {
+            List<String> values = new ArrayList<>();
+            for (int i = 0; i < ROWS_PER_USER; i++) {
+                values.add(String.format("(%d, %d, %d, '%s', %d, '%s')",
+                    id++, FIRST_USER + u, (10 + i) * 100, base.plusDays(i * 7L), i % 2, TAGS[i % TAGS.length]));
+            }
+            client.query("INSERT INTO Despesa (id, idUser, amountCents, date, operation, tag) VALUES " + String.join(",", values))
+                .execute().await().indefinitely();
+        }
+        client.query("ANALYZE TABLE Despesa").execute().await().indefinitely();
+    }
+
+    @Test
+    void listByDateRangeUsesIndex() {
+        assertNoFullScan("SELECT * FROM Despesa WHERE idUser = " + FIRST_USER +
+            " AND date >= '2024-03-01' AND date <= '2024-09-30'");
+    }
+
+    @Test
+    void listWithAllFiltersUsesIndex() {
+        assertNoFullScan("SELECT * FROM Despesa WHERE idUser = " + FIRST_USER +
+            " AND operation = 0 AND tag = 'Lazer' AND date >= '2024-03-01' AND date <= '2024-09-30'");
+    }
+
+    @Test
+    void keysetPageUsesIndex() {
+        assertNoFullScan("SELECT * FROM Despesa WHERE idUser = " + FIRST_USER +
+            " AND (date < '2024-06-01' OR (date = '2024-06-01' AND id < 900000050))" +
+            " ORDER BY date DESC, id DESC LIMIT 51");
+    }
+
+    @Test
+    void changesSinceCursorUseIndex() {
+        assertNoFullScan("SELECT * FROM Despesa WHERE idUser = " + FIRST_USER +
+            " AND changeSeq > 10 AND changeSeq <= 20 ORDER BY changeSeq, id LIMIT 5001");
+    }
+
+    @Test
+    void saldoUsesIndex() {
+        assertNoFullScan("SELECT COALESCE(SUM(CASE WHEN operation = 1 THEN amountCents WHEN operation = 0 THEN -amountCents ELSE 0 END), 0)" +
+            " FROM Despesa WHERE idUser = " + FIRST_USER);
+    }
+
+    @Test
+    void tagSumsUseIndex() {
+        assertNoFullScan("SELECT tag, COALESCE(SUM(amountCents), 0) FROM Despesa WHERE idUser = " + FIRST_USER +
+            " AND operation = 0 AND date >= '2024-02-10' AND date <= '2024-02-29' GROUP BY tag");
+    }
+
+    @Test
+    void seriesUsesIndex() {
+        assertNoFullScan("SELECT date, operation, tag, COALESCE(SUM(amountCents), 0) FROM Despesa WHERE idUser = " + FIRST_USER +
+            " AND date >= '2024-01-01' AND date <= '2024-12-31' GROUP BY date, operation, tag");
+    }
+
+    @Test
+    void tagRollupUsesPrimaryKey() {
+        assertNoFullScan("SELECT tag, COALESCE(SUM(totalCents), 0) FROM tag_rollup WHERE idUser = " + FIRST_USER +
+            " AND operation = 0 AND yearMonth >= 202401 AND yearMonth <= 202412 GROUP BY tag");
+    }
+
+    @Test
+    void saldoAsOfPartialMonthUsesIndex() {
+        assertNoFullScan("SELECT COALESCE(SUM(CASE WHEN operation = 1 THEN amountCents ELSE -amountCents END), 0)" +
+            " FROM Despesa WHERE idUser = " + FIRST_USER + " AND date >= '2024-06-01' AND date <= '2024-06-15'");
+    }
+
+    @Test
+    void reconcileUserScanUsesIndex() {
+        assertNoFullScan("SELECT DISTINCT idUser FROM Despesa WHERE idUser > " + FIRST_USER + " ORDER BY idUser LIMIT 500");
+    }
+
+    private void assertNoFullScan(String sql) {
+        RowSet<Row> plan = client.query("EXPLAIN " + sql).execute().await().indefinitely();
+        assertFalse(plan.size() == 0, "EXPLAIN sem linhas: " + sql);
+        for (Row row : plan) {
+            assertNotEquals("ALL", row.getString("type"), "Full scan em " + row.getString("table") + ": " + sql);
+        }
+    }
+}
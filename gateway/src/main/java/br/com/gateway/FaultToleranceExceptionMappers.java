@@ -0,0 +1,38 @@
+package br.com.gateway;
+
+import org.eclipse.microprofile.faulttolerance.exceptions.BulkheadException;
+import org.eclipse.microprofile.faulttolerance.exceptions.CircuitBreakerOpenException;
+import org.eclipse.microprofile.faulttolerance.exceptions.TimeoutException;
+import org.jboss.resteasy.reactive.server.ServerExceptionMapper;
+
+import jakarta.ws.rs.core.Response;
+
+/**
+ * Falhas rápidas dos REST clients (circuito aberto, bulkhead cheio, timeout) viram
+ * respostas HTTP em vez de 500.
+ */
+public class FaultToleranceExceptionMappers {
+
+    @ServerExceptionMapper
+    public Response circuitOpen(CircuitBreakerOpenException e) {
+        return Response.status(Response.Status.SERVICE_UNAVAILABLE)
+            .header("Retry-After", 5)
+            .entity("Serviço temporariamente indisponível")
+            .build();
+    }
+
+    @ServerExceptionMapper
+    public Response bulkheadFull(BulkheadException e) {
+        return Response.status(Response.Status.SERVICE_UNAVAILABLE)
+            .header("Retry-After", 1)
+            .entity("Serviço sobrecarregado, tente novamente")
+            .build();
+    }
+
+    @ServerExceptionMapper
+    public Response timeout(TimeoutException e) {
+        return Response.status(Response.Status.GATEWAY_TIMEOUT)
+            .entity("Tempo de resposta do serviço esgotado")
+            .build();
+    }
+}
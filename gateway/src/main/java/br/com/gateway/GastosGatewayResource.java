@@ -1,6 +1,17 @@
 package br.com.gateway;
 
+import java.math.BigDecimal;
+import java.time.Duration;
 import java.time.LocalDate;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
+
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.eclipse.microprofile.faulttolerance.exceptions.BulkheadException;
+import org.eclipse.microprofile.faulttolerance.exceptions.CircuitBreakerOpenException;
+import org.eclipse.microprofile.jwt.JsonWebToken;
 
 import org.eclipse.microprofile.openapi.annotations.Operation;
 import org.eclipse.microprofile.openapi.annotations.media.Schema;
@@ -8,8 +19,13 @@ import org.eclipse.microprofile.openapi.annotations.parameters.Parameter;
 import org.eclipse.microprofile.openapi.annotations.responses.APIResponse;
 import org.eclipse.microprofile.openapi.annotations.tags.Tag;
 import org.eclipse.microprofile.rest.client.inject.RestClient;
+import org.jboss.resteasy.reactive.RestMediaType;
+import org.jboss.resteasy.reactive.RestStreamElementType;
+
+import com.fasterxml.jackson.databind.JsonNode;
 
 import br.com.gateway.client.GastosClient;
+import io.smallrye.mutiny.Multi;
 import io.smallrye.mutiny.Uni;
 import jakarta.annotation.security.RolesAllowed;
 import jakarta.inject.Inject;
@@ -22,8 +38,13 @@ import jakarta.ws.rs.POST;
 import jakarta.ws.rs.Path;
 import jakarta.ws.rs.Produces;
 import jakarta.ws.rs.QueryParam;
+import jakarta.ws.rs.WebApplicationException;
+import jakarta.ws.rs.core.Context;
 import jakarta.ws.rs.core.MediaType;
 import jakarta.ws.rs.core.Response;
+import jakarta.ws.rs.core.UriInfo;
+import jakarta.ws.rs.sse.Sse;
+import jakarta.ws.rs.sse.SseEventSink;
 
 @Path("/api/gastos")
 @Produces(MediaType.APPLICATION_JSON)
@@ -35,6 +56,30 @@ public class GastosGatewayResource {
     @RestClient
     GastosClient gastosClient;
 
+    @Inject
+    JsonWebToken jwt;
+
+    @Inject
+    SingleFlight singleFlight;
+
+    @Inject
+    SseRelay sseRelay;
+
+    @Context
+    UriInfo uriInfo;
+
+    @ConfigProperty(name = "gateway.dashboard.saldo-timeout", defaultValue = "2s")
+    Duration saldoTimeout;
+
+    @ConfigProperty(name = "gateway.dashboard.tags-timeout", defaultValue = "3s")
+    Duration tagsTimeout;
+
+    @ConfigProperty(name = "gateway.dashboard.despesas-timeout", defaultValue = "3s")
+    Duration despesasTimeout;
+
+    @ConfigProperty(name = "gateway.dashboard.recent-limit", defaultValue = "20")
+    int recentLimit;
+
     @POST
     @Path("/despesa/create")
     @RolesAllowed({"user"})
@@ -43,12 +88,38 @@ public class GastosGatewayResource {
     @APIResponse(responseCode = "400", description = "Dados inválidos")
     public Uni<Response> createDespesa(
         @HeaderParam("Authorization") String authHeader,
-        @QueryParam("amount") Double amount,
+        @Parameter(description = "Valor em centavos (ex.: 1050 = R$ 10,50)")
+        @QueryParam("amountCents") Long amountCents,
+        @Parameter(description = "Valor decimal (compatibilidade); ignorado se amountCents for informado")
+        @QueryParam("amount") BigDecimal amount,
         @Parameter(description = "Tipo de operacao. Valores permitidos: C (Credito) ou D (Debito)", schema = @Schema(enumeration = {"C", "D"}))
         @QueryParam("operation") String operation,
         @QueryParam("tag") String tag,
         @QueryParam("date") LocalDate date) {
-        return gastosClient.createDespesa(authHeader, amount, operation, tag, date);
+        return gastosClient.createDespesa(authHeader, amountCents, amount, operation, tag, date);
+    }
+
+    @POST
+    @Path("/despesa/batch")
+    @RolesAllowed({"user"})
+    @Operation(summary = "Criar despesas em lote", description = "Cria várias despesas numa única transação a partir de um array JSON")
+    @APIResponse(responseCode = "200", description = "Resultado por item (id criado ou erro)")
+    @APIResponse(responseCode = "413", description = "Lote acima do limite permitido")
+    public Uni<Response> createDespesasBatch(
+        @HeaderParam("Authorization") String authHeader,
+        String body) {
+        return gastosClient.createDespesasBatch(authHeader, body);
+    }
+
+    @POST
+    @Path("/despesa/batch")
+    @RolesAllowed({"user"})
+    @Consumes(RestMediaType.APPLICATION_NDJSON)
+    @Operation(summary = "Criar despesas em lote (NDJSON)", description = "Cria várias despesas numa única transação, uma despesa JSON por linha")
+    public Uni<Response> createDespesasBatchNdjson(
+        @HeaderParam("Authorization") String authHeader,
+        String body) {
+        return gastosClient.createDespesasBatchNdjson(authHeader, body);
     }
 
     @GET
@@ -56,13 +127,62 @@ public class GastosGatewayResource {
     @RolesAllowed({"user"})
     public Uni<Response> getDespesas(
         @HeaderParam("Authorization") String authHeader,
+        @HeaderParam("If-None-Match") String ifNoneMatch,
         @Parameter(description = "Tipo de operacao. Valores permitidos: C (Credito) ou D (Debito)", schema = @Schema(enumeration = {"C", "D"}))
         @QueryParam("operation") String operation,
         @QueryParam("tag") String tag,
         @QueryParam("dateStart") String dateStart,
         @QueryParam("dateEnd") String dateEnd
     ) {
-        return gastosClient.getDespesas(authHeader, operation, tag, dateStart, dateEnd);
+        return coalesce(ifNoneMatch, () -> gastosClient.getDespesas(authHeader, ifNoneMatch, operation, tag, dateStart, dateEnd));
+    }
+
+    @GET
+    @Path("/despesas/page")
+    @RolesAllowed({"user"})
+    @Operation(summary = "Listar despesas paginadas", description = "Lista despesas da mais recente para a mais antiga, paginadas por cursor")
+    public Uni<Response> getDespesasPage(
+        @HeaderParam("Authorization") String authHeader,
+        @Parameter(description = "Tipo de operacao. Valores permitidos: C (Credito) ou D (Debito)", schema = @Schema(enumeration = {"C", "D"}))
+        @QueryParam("operation") String operation,
+        @QueryParam("tag") String tag,
+        @QueryParam("dateStart") String dateStart,
+        @QueryParam("dateEnd") String dateEnd,
+        @Parameter(description = "Valor de nextCursor retornado pela pagina anterior")
+        @QueryParam("cursor") String cursor,
+        @QueryParam("limit") Integer limit
+    ) {
+        return gastosClient.getDespesasPage(authHeader, operation, tag, dateStart, dateEnd, cursor, limit);
+    }
+
+    @GET
+    @Path("/despesas/changes")
+    @RolesAllowed({"user"})
+    @Operation(summary = "Sincronizar despesas", description = "Despesas criadas/alteradas e ids removidos depois do cursor 'since'. "
+        + "Sem 'since' devolve todas; resync=true indica que o cliente deve recarregar pela listagem")
+    public Uni<Response> getChanges(
+        @HeaderParam("Authorization") String authHeader,
+        @Parameter(description = "Valor de cursor retornado pela chamada anterior")
+        @QueryParam("since") Long since
+    ) {
+        return gastosClient.getChanges(authHeader, since);
+    }
+
+    @GET
+    @Path("/despesas/stream")
+    @RolesAllowed({"user"})
+    @Produces(RestMediaType.APPLICATION_NDJSON)
+    @RestStreamElementType(MediaType.APPLICATION_JSON)
+    @Operation(summary = "Exportar despesas", description = "Transmite todas as despesas filtradas, uma por linha (NDJSON)")
+    public Multi<JsonNode> streamDespesas(
+        @HeaderParam("Authorization") String authHeader,
+        @Parameter(description = "Tipo de operacao. Valores permitidos: C (Credito) ou D (Debito)", schema = @Schema(enumeration = {"C", "D"}))
+        @QueryParam("operation") String operation,
+        @QueryParam("tag") String tag,
+        @QueryParam("dateStart") String dateStart,
+        @QueryParam("dateEnd") String dateEnd
+    ) {
+        return gastosClient.streamDespesas(authHeader, operation, tag, dateStart, dateEnd);
     }
 
     @PATCH
@@ -71,13 +191,18 @@ public class GastosGatewayResource {
     public Uni<Response> updateDespesa(
         @HeaderParam("Authorization") String authHeader,
         @QueryParam("id") Long id,
-        @QueryParam("amount") Double amount,
+        @Parameter(description = "Valor em centavos (ex.: 1050 = R$ 10,50)")
+        @QueryParam("amountCents") Long amountCents,
+        @Parameter(description = "Valor decimal (compatibilidade); ignorado se amountCents for informado")
+        @QueryParam("amount") BigDecimal amount,
         @Parameter(description = "Tipo de operacao. Valores permitidos: C (Credito) ou D (Debito)", schema = @Schema(enumeration = {"C", "D"}))
         @QueryParam("operation") String operation,
         @QueryParam("tag") String tag,
-        @QueryParam("date") LocalDate date
+        @QueryParam("date") LocalDate date,
+        @Parameter(description = "changeSeq da despesa lida pelo cliente; se ela tiver mudado desde então a resposta é 409")
+        @QueryParam("version") Long version
     ) {
-        return gastosClient.updateDespesa(authHeader, id, amount, operation, tag, date);
+        return gastosClient.updateDespesa(authHeader, id, amountCents, amount, operation, tag, date, version);
     }
 
     @DELETE
@@ -85,9 +210,11 @@ public class GastosGatewayResource {
     @RolesAllowed({"user"})
     public Uni<Response> deleteDespesa(
         @HeaderParam("Authorization") String authHeader,
-        @QueryParam("id") Long id
+        @QueryParam("id") Long id,
+        @Parameter(description = "changeSeq da despesa lida pelo cliente; se ela tiver mudado desde então a resposta é 409")
+        @QueryParam("version") Long version
     ) {
-        return gastosClient.deleteDespesa(authHeader, id);
+        return gastosClient.deleteDespesa(authHeader, id, version);
     }
 
     @GET
@@ -95,17 +222,128 @@ public class GastosGatewayResource {
     @RolesAllowed({"user"})
     public Uni<Response> getTagSums(
         @HeaderParam("Authorization") String authHeader,
+        @HeaderParam("If-None-Match") String ifNoneMatch,
         @QueryParam("tag") String tag,
         @QueryParam("dateStart") String dateStart,
         @QueryParam("dateEnd") String dateEnd
     ) {
-        return gastosClient.getTagSums(authHeader, tag, dateStart, dateEnd);
+        return coalesce(ifNoneMatch, () -> gastosClient.getTagSums(authHeader, ifNoneMatch, tag, dateStart, dateEnd));
+    }
+
+    @GET
+    @Path("/series")
+    @RolesAllowed({"user"})
+    @Operation(summary = "Série temporal", description = "Totais de crédito e débito por dia, semana ou mês no intervalo, "
+        + "opcionalmente por tag. Use para gráficos no lugar de agregar /despesas/list no cliente")
+    public Uni<Response> getSeries(
+        @HeaderParam("Authorization") String authHeader,
+        @HeaderParam("If-None-Match") String ifNoneMatch,
+        @Parameter(description = "Tamanho do bucket", schema = @Schema(enumeration = {"day", "week", "month"}))
+        @QueryParam("granularity") String granularity,
+        @QueryParam("dateStart") String dateStart,
+        @QueryParam("dateEnd") String dateEnd,
+        @Parameter(description = "Se true, um bucket por (período, tag)")
+        @QueryParam("byTag") Boolean byTag
+    ) {
+        return coalesce(ifNoneMatch, () -> gastosClient.getSeries(authHeader, ifNoneMatch, granularity, dateStart, dateEnd, byTag));
     }
 
     @GET
     @Path("/saldo")
     @RolesAllowed({"user"})
-    public Uni<Response> getSaldo(@HeaderParam("Authorization") String authHeader) {
-        return gastosClient.getSaldo(authHeader);
+    public Uni<Response> getSaldo(
+        @HeaderParam("Authorization") String authHeader,
+        @HeaderParam("If-None-Match") String ifNoneMatch,
+        @Parameter(description = "Data (yyyy-MM-dd) para o saldo ao fim daquele dia; ausente = saldo atual")
+        @QueryParam("asOf") String asOf
+    ) {
+        return coalesce(ifNoneMatch, () -> gastosClient.getSaldo(authHeader, ifNoneMatch, asOf));
+    }
+
+    @GET
+    @Path("/saldo/stream")
+    @RolesAllowed({"user"})
+    @Produces(MediaType.SERVER_SENT_EVENTS)
+    @Operation(summary = "Saldo em tempo real", description = "Stream SSE (evento 'saldo') com o saldo e os totais por tag "
+        + "afetados a cada escrita, mais heartbeats. Use no lugar de polling em /saldo")
+    public void streamSaldo(
+        @HeaderParam("Authorization") String authHeader,
+        @Context SseEventSink sink,
+        @Context Sse sse
+    ) {
+        sseRelay.relay(gastosClient.streamSaldo(authHeader), "saldo", sink, sse);
+    }
+
+    @GET
+    @Path("/dashboard")
+    @RolesAllowed({"user"})
+    @Operation(summary = "Dashboard", description = "Saldo, soma por tags e despesas recentes numa única chamada. "
+        + "As três consultas são feitas em paralelo; se uma falhar, o campo correspondente vem nulo e o erro em 'errors'")
+    @APIResponse(responseCode = "200", description = "Dashboard completo ou parcial")
+    @APIResponse(responseCode = "502", description = "Nenhuma das consultas respondeu")
+    public Uni<Response> getDashboard(
+        @HeaderParam("Authorization") String authHeader,
+        @QueryParam("dateStart") String dateStart,
+        @QueryParam("dateEnd") String dateEnd
+    ) {
+        Map<String, String> errors = new ConcurrentHashMap<>();
+        Uni<JsonNode> saldo = leg("saldo", gastosClient.getSaldo(authHeader, null, null), saldoTimeout, errors);
+        Uni<JsonNode> porTags = leg("porTags", gastosClient.getTagSums(authHeader, null, null, dateStart, dateEnd), tagsTimeout, errors);
+        Uni<JsonNode> despesas = leg("despesas",
+            gastosClient.getDespesasPage(authHeader, null, null, dateStart, dateEnd, null, recentLimit), despesasTimeout, errors);
+
+        // Latência total = a da consulta mais lenta, não a soma das três
+        return Uni.combine().all().unis(saldo, porTags, despesas).with((s, t, d) -> {
+            DashboardResponse dashboard = new DashboardResponse();
+            dashboard.saldo = s;
+            dashboard.porTags = t;
+            dashboard.despesas = d;
+            dashboard.errors = errors.isEmpty() ? null : errors;
+            Response.Status status = errors.size() == 3 ? Response.Status.BAD_GATEWAY : Response.Status.OK;
+            return Response.status(status).entity(dashboard).build();
+        });
+    }
+
+    // Várias abas/dispositivos do mesmo usuário pedindo a mesma coisa ao mesmo tempo viram uma chamada só.
+    // O If-None-Match entra na chave: quem não mandou ETag nunca pode receber o 304 de outro.
+    // ETag e 304 do gastos voltam ao cliente sem alteração.
+    private Uni<Response> coalesce(String ifNoneMatch, Supplier<Uni<Response>> call) {
+        Object id = jwt.getClaim("id");
+        return singleFlight.execute(id != null ? id.toString() : jwt.getName(),
+            uriInfo.getPath(), uriInfo.getRequestUri().getRawQuery(), ifNoneMatch, call);
+    }
+
+    // Uma perna do dashboard: falha ou timeout viram null + entrada em errors, sem derrubar as outras
+    private static Uni<JsonNode> leg(String name, Uni<Response> call, Duration timeout, Map<String, String> errors) {
+        return call
+            .ifNoItem().after(timeout).fail()
+            .map(response -> response.readEntity(JsonNode.class))
+            .onFailure().recoverWithItem(e -> {
+                errors.put(name, describe(e));
+                return null;
+            });
+    }
+
+    private static String describe(Throwable e) {
+        if (e instanceof TimeoutException || e instanceof org.eclipse.microprofile.faulttolerance.exceptions.TimeoutException) {
+            return "timeout";
+        }
+        if (e instanceof CircuitBreakerOpenException) {
+            return "circuito aberto";
+        }
+        if (e instanceof BulkheadException) {
+            return "serviço sobrecarregado";
+        }
+        if (e instanceof WebApplicationException wae && wae.getResponse() != null) {
+            return "HTTP " + wae.getResponse().getStatus();
+        }
+        return e.getMessage() != null ? e.getMessage() : e.getClass().getSimpleName();
+    }
+
+    public static class DashboardResponse {
+        public JsonNode saldo;
+        public JsonNode porTags;
+        public JsonNode despesas;
+        public Map<String, String> errors;
     }
 }
@@ -0,0 +1,113 @@
+package br.com.gateway;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.jboss.resteasy.reactive.ClientWebApplicationException;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.smallrye.mutiny.Uni;
+import jakarta.annotation.PostConstruct;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import jakarta.ws.rs.core.Response;
+
+/**
+ * Junta GETs idênticos e simultâneos (mesmo usuário, path, query e If-None-Match) numa única chamada ao
+ * serviço de destino. A resposta é lida uma vez para memória e cada requisição recebe sua cópia.
+ * A entrada sai do mapa assim que a chamada termina: nada é reaproveitado depois disso,
+ * então não há como servir dado velho.
+ */
+@ApplicationScoped
+public class SingleFlight {
+
+    private static final Set<String> SKIPPED_HEADERS = Set.of("content-length", "transfer-encoding", "connection");
+
+    @ConfigProperty(name = "gateway.single-flight.enabled", defaultValue = "true")
+    boolean enabled;
+
+    @Inject
+    MeterRegistry registry;
+
+    private final Map<Key, CompletableFuture<Buffered>> inFlight = new ConcurrentHashMap<>();
+    private Counter leaders;
+    private Counter coalesced;
+
+    @PostConstruct
+    void init() {
+        leaders = Counter.builder("gateway.single_flight.requests")
+            .description("GETs que foram de fato ao serviço de destino")
+            .tag("result", "leader")
+            .register(registry);
+        coalesced = Counter.builder("gateway.single_flight.requests")
+            .description("GETs atendidos pela chamada de outra requisição em andamento")
+            .tag("result", "coalesced")
+            .register(registry);
+        registry.gaugeMapSize("gateway.single_flight.in_flight", List.of(), inFlight);
+    }
+
+    public Uni<Response> execute(String userId, String path, String query, String ifNoneMatch,
+                                 Supplier<Uni<Response>> call) {
+        if (!enabled || userId == null) {
+            return call.get();
+        }
+        Key key = new Key(userId, path, query, ifNoneMatch);
+        CompletableFuture<Buffered> flight = new CompletableFuture<>();
+        CompletableFuture<Buffered> existing = inFlight.putIfAbsent(key, flight);
+        if (existing != null) {
+            coalesced.increment();
+            return share(existing);
+        }
+        leaders.increment();
+
+        // Assinado aqui, não pelo cliente: se o primeiro desistir, os demais ainda recebem a resposta
+        call.get()
+            .map(Buffered::of)
+            .onFailure(ClientWebApplicationException.class)
+            .recoverWithItem(e -> Buffered.of(((ClientWebApplicationException) e).getResponse()))
+            .subscribe().with(
+                result -> {
+                    inFlight.remove(key, flight);
+                    flight.complete(result);
+                },
+                failure -> {
+                    inFlight.remove(key, flight);
+                    flight.completeExceptionally(failure);
+                });
+        return share(flight);
+    }
+
+    // copy(): cancelar uma requisição não cancela o resultado compartilhado
+    private static Uni<Response> share(CompletableFuture<Buffered> flight) {
+        return Uni.createFrom().completionStage(flight::copy).map(Buffered::toResponse);
+    }
+
+    private record Key(String userId, String path, String query, String ifNoneMatch) {}
+
+    private record Buffered(int status, Map<String, List<String>> headers, byte[] body) {
+
+        static Buffered of(Response response) {
+            if (response == null) {
+                return new Buffered(Response.Status.BAD_GATEWAY.getStatusCode(), Map.of(), null);
+            }
+            byte[] body = response.hasEntity() ? response.readEntity(byte[].class) : null;
+            return new Buffered(response.getStatus(), Map.copyOf(response.getStringHeaders()), body);
+        }
+
+        Response toResponse() {
+            Response.ResponseBuilder builder = Response.status(status).entity(body);
+            headers.forEach((name, values) -> {
+                if (!SKIPPED_HEADERS.contains(name.toLowerCase())) {
+                    values.forEach(value -> builder.header(name, value));
+                }
+            });
+            return builder.build();
+        }
+    }
+}
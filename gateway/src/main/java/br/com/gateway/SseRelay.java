@@ -0,0 +1,80 @@
+package br.com.gateway;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+
+import com.fasterxml.jackson.databind.JsonNode;
+
+import io.quarkus.logging.Log;
+import io.smallrye.mutiny.Multi;
+import io.smallrye.mutiny.subscription.Cancellable;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.ws.rs.core.MediaType;
+import jakarta.ws.rs.sse.OutboundSseEvent;
+import jakarta.ws.rs.sse.Sse;
+import jakarta.ws.rs.sse.SseEventSink;
+
+/**
+ * Repassa um stream SSE de um serviço para o cliente, com heartbeat próprio e um limite de
+ * eventos ainda não entregues por conexão. Se o cliente não acompanhar, a conexão é fechada
+ * (o EventSource reconecta e recebe o estado atual), em vez de acumular memória no gateway.
+ */
+@ApplicationScoped
+public class SseRelay {
+
+    @ConfigProperty(name = "gateway.sse.heartbeat", defaultValue = "15s")
+    Duration heartbeat;
+
+    @ConfigProperty(name = "gateway.sse.max-pending", defaultValue = "32")
+    int maxPending;
+
+    public void relay(Multi<JsonNode> upstream, String eventName, SseEventSink sink, Sse sse) {
+        Multi<OutboundSseEvent> events = Multi.createBy().merging().streams(
+            upstream
+                // Heartbeats do serviço só mantêm a conexão interna; o cliente recebe os do gateway
+                .select().where(node -> !"heartbeat".equals(node.path("type").asText()))
+                .map(node -> sse.newEventBuilder()
+                    .name(eventName)
+                    .mediaType(MediaType.APPLICATION_JSON_TYPE)
+                    .data(JsonNode.class, node)
+                    .build()),
+            Multi.createFrom().ticks().every(heartbeat)
+                .map(tick -> sse.newEventBuilder().comment("heartbeat").build()));
+
+        AtomicInteger pending = new AtomicInteger();
+        AtomicReference<Cancellable> subscription = new AtomicReference<>();
+        Runnable close = () -> {
+            Cancellable current = subscription.getAndSet(null);
+            if (current != null) {
+                current.cancel();
+            }
+            if (!sink.isClosed()) {
+                sink.close();
+            }
+        };
+
+        subscription.set(events.subscribe().with(
+            event -> {
+                if (sink.isClosed()) {
+                    close.run();
+                    return;
+                }
+                if (pending.incrementAndGet() > maxPending) {
+                    Log.debugf("Cliente SSE lento: %d eventos pendentes, desconectando", maxPending);
+                    close.run();
+                    return;
+                }
+                sink.send(event).whenComplete((ignored, failure) -> {
+                    pending.decrementAndGet();
+                    if (failure != null) {
+                        close.run();
+                    }
+                });
+            },
+            failure -> close.run(),
+            close));
+    }
+}
@@ -15,6 +15,7 @@ import jakarta.ws.rs.PATCH;
 import jakarta.ws.rs.POST;
 import jakarta.ws.rs.Path;
 import jakarta.ws.rs.Produces;
+import jakarta.ws.rs.core.HttpHeaders;
 import jakarta.ws.rs.core.MediaType;
 import jakarta.ws.rs.core.Response;
 
@@ -33,7 +34,7 @@ public class UsersGatewayResource {
     @Path("/login")
     @Produces(MediaType.TEXT_PLAIN)
     @Operation(summary = "Login de usuário", description = "Autentica um usuário e retorna um token JWT")
-    @APIResponse(responseCode = "200", description = "Login bem-sucedido, retorna JWT token")
+    @APIResponse(responseCode = "200", description = "Login bem-sucedido, retorna JWT token e o refresh token no header refreshToken")
     @APIResponse(responseCode = "401", description = "Credenciais inválidas")
     public Uni<Response> login(
         @HeaderParam("email") String email,
@@ -42,6 +43,29 @@ public class UsersGatewayResource {
         return forward(usersClient.login(email, password));
     }
 
+    @POST
+    @Path("/refresh")
+    @Produces(MediaType.TEXT_PLAIN)
+    @Operation(summary = "Renovar token", description = "Troca um refresh token por um novo JWT sem reenviar a senha; o refresh token é rotacionado")
+    @APIResponse(responseCode = "200", description = "Novo JWT no corpo e novo refresh token no header refreshToken")
+    @APIResponse(responseCode = "401", description = "Refresh token inválido, expirado ou revogado")
+    public Uni<Response> refresh(
+        @HeaderParam("refreshToken") String refreshToken
+    ) {
+        return forward(usersClient.refresh(refreshToken));
+    }
+
+    @POST
+    @Path("/logout")
+    @Produces(MediaType.TEXT_PLAIN)
+    @Operation(summary = "Logout", description = "Revoga o refresh token informado")
+    @APIResponse(responseCode = "204", description = "Refresh token revogado")
+    public Uni<Response> logout(
+        @HeaderParam("refreshToken") String refreshToken
+    ) {
+        return forward(usersClient.logout(refreshToken));
+    }
+
     @POST
     @Path("/create")
     @Operation(summary = "Criar usuário", description = "Cria um novo usuário no sistema")
@@ -92,7 +116,13 @@ public class UsersGatewayResource {
                         entity = remote.getEntity();
                     }
                 }
-                return Uni.createFrom().item(Response.status(status).entity(entity).build());
+                Response.ResponseBuilder response = Response.status(status).entity(entity);
+                // 503 de load shedding (BCrypt) e 429 indicam quando tentar de novo
+                String retryAfter = remote != null ? remote.getHeaderString(HttpHeaders.RETRY_AFTER) : null;
+                if (retryAfter != null) {
+                    response.header(HttpHeaders.RETRY_AFTER, retryAfter);
+                }
+                return Uni.createFrom().item(response.build());
             });
     }
 }
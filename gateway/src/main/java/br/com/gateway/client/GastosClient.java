@@ -1,14 +1,29 @@
 package br.com.gateway.client;
 
+import java.math.BigDecimal;
 import java.time.LocalDate;
+import java.time.temporal.ChronoUnit;
 
+import org.eclipse.microprofile.faulttolerance.Bulkhead;
+import org.eclipse.microprofile.faulttolerance.CircuitBreaker;
+import org.eclipse.microprofile.faulttolerance.Retry;
+import org.eclipse.microprofile.faulttolerance.Timeout;
+import org.eclipse.microprofile.faulttolerance.exceptions.TimeoutException;
+import org.eclipse.microprofile.rest.client.annotation.RegisterProvider;
 import org.eclipse.microprofile.rest.client.inject.RegisterRestClient;
+import org.jboss.resteasy.reactive.RestMediaType;
+import org.jboss.resteasy.reactive.RestStreamElementType;
 
+import com.fasterxml.jackson.databind.JsonNode;
+
+import io.smallrye.mutiny.Multi;
 import io.smallrye.mutiny.Uni;
+import jakarta.ws.rs.Consumes;
 import jakarta.ws.rs.DELETE;
 import jakarta.ws.rs.GET;
 import jakarta.ws.rs.PATCH;
 import jakarta.ws.rs.POST;
+import jakarta.ws.rs.ProcessingException;
 import jakarta.ws.rs.Path;
 import jakarta.ws.rs.Produces;
 import jakarta.ws.rs.QueryParam;
@@ -16,10 +31,20 @@ import jakarta.ws.rs.HeaderParam;
 import jakarta.ws.rs.core.MediaType;
 import jakarta.ws.rs.core.Response;
 
+// Cada método tem seu próprio breaker e bulkhead: uma rota lenta não consome a capacidade das outras.
+// Só 5xx, timeout e erro de conexão contam como falha; 4xx é resposta válida do serviço.
+@RegisterProvider(UpstreamServerExceptionMapper.class)
+@Bulkhead(value = 64, waitingTaskQueue = 128)
+@CircuitBreaker(requestVolumeThreshold = 20, failureRatio = 0.5, delay = 5, delayUnit = ChronoUnit.SECONDS,
+    successThreshold = 3, failOn = {UpstreamServerException.class, TimeoutException.class, ProcessingException.class})
+@Timeout(5000)
 @Path("/gastos")
 @RegisterRestClient(configKey = "gastos-api")
 public interface GastosClient {
 
+    @Retry(maxRetries = 2, delay = 50, jitter = 25, maxDuration = 2000,
+        retryOn = {UpstreamServerException.class, TimeoutException.class, ProcessingException.class})
+    @Timeout(1000)
     @GET
     @Path("/test-auth")
     @Produces(MediaType.APPLICATION_JSON)
@@ -30,17 +55,87 @@ public interface GastosClient {
     @Produces(MediaType.APPLICATION_JSON)
     Uni<Response> createDespesa(
         @HeaderParam("Authorization") String authHeader,
-        @QueryParam("amount") Double amount,
+        @QueryParam("amountCents") Long amountCents,
+        @QueryParam("amount") BigDecimal amount,
         // operation aceita apenas C (Credito) ou D (Debito)
         @QueryParam("operation") String operation,
         @QueryParam("tag") String tag,
         @QueryParam("date") LocalDate date
     );
 
+    @Timeout(30000)
+    @POST
+    @Path("/despesa/batch")
+    @Consumes(MediaType.APPLICATION_JSON)
+    @Produces(MediaType.APPLICATION_JSON)
+    Uni<Response> createDespesasBatch(
+        @HeaderParam("Authorization") String authHeader,
+        // Array JSON repassado sem desserializar
+        String body
+    );
+
+    @Timeout(30000)
+    @POST
+    @Path("/despesa/batch")
+    @Consumes(RestMediaType.APPLICATION_NDJSON)
+    @Produces(MediaType.APPLICATION_JSON)
+    Uni<Response> createDespesasBatchNdjson(
+        @HeaderParam("Authorization") String authHeader,
+        // Uma despesa JSON por linha
+        String body
+    );
+
+    @Retry(maxRetries = 2, delay = 50, jitter = 25, maxDuration = 8000,
+        retryOn = {UpstreamServerException.class, TimeoutException.class, ProcessingException.class})
+    @Timeout(4000)
     @GET
     @Path("/despesas/list")
     @Produces(MediaType.APPLICATION_JSON)
     Uni<Response> getDespesas(
+        @HeaderParam("Authorization") String authHeader,
+        // ETag de uma resposta anterior; o gastos responde 304 se nada mudou
+        @HeaderParam("If-None-Match") String ifNoneMatch,
+        // operation aceita apenas C (Credito) ou D (Debito)
+        @QueryParam("operation") String operation,
+        @QueryParam("tag") String tag,
+        @QueryParam("dateStart") String dateStart,
+        @QueryParam("dateEnd") String dateEnd
+    );
+
+    @Retry(maxRetries = 2, delay = 50, jitter = 25, maxDuration = 3000,
+        retryOn = {UpstreamServerException.class, TimeoutException.class, ProcessingException.class})
+    @Timeout(1500)
+    @GET
+    @Path("/despesas/page")
+    @Produces(MediaType.APPLICATION_JSON)
+    Uni<Response> getDespesasPage(
+        @HeaderParam("Authorization") String authHeader,
+        // operation aceita apenas C (Credito) ou D (Debito)
+        @QueryParam("operation") String operation,
+        @QueryParam("tag") String tag,
+        @QueryParam("dateStart") String dateStart,
+        @QueryParam("dateEnd") String dateEnd,
+        @QueryParam("cursor") String cursor,
+        @QueryParam("limit") Integer limit
+    );
+
+    @Retry(maxRetries = 2, delay = 50, jitter = 25, maxDuration = 3000,
+        retryOn = {UpstreamServerException.class, TimeoutException.class, ProcessingException.class})
+    @Timeout(1500)
+    @GET
+    @Path("/despesas/changes")
+    @Produces(MediaType.APPLICATION_JSON)
+    Uni<Response> getChanges(
+        @HeaderParam("Authorization") String authHeader,
+        @QueryParam("since") Long since
+    );
+
+    // Multi não passa por retry/timeout do fault tolerance: o stream é repassado com backpressure
+    @GET
+    @Path("/despesas/stream")
+    @Produces(RestMediaType.APPLICATION_NDJSON)
+    @RestStreamElementType(MediaType.APPLICATION_JSON)
+    Multi<JsonNode> streamDespesas(
         @HeaderParam("Authorization") String authHeader,
         // operation aceita apenas C (Credito) ou D (Debito)
         @QueryParam("operation") String operation,
@@ -55,11 +150,14 @@ public interface GastosClient {
     Uni<Response> updateDespesa(
         @HeaderParam("Authorization") String authHeader,
         @QueryParam("id") Long id,
-        @QueryParam("amount") Double amount,
+        @QueryParam("amountCents") Long amountCents,
+        @QueryParam("amount") BigDecimal amount,
         // operation aceita apenas C (Credito) ou D (Debito)
         @QueryParam("operation") String operation,
         @QueryParam("tag") String tag,
-        @QueryParam("date") LocalDate date
+        @QueryParam("date") LocalDate date,
+        // changeSeq esperado (controle otimista); 409 se a despesa mudou
+        @QueryParam("version") Long version
     );
 
     @DELETE
@@ -67,21 +165,57 @@ public interface GastosClient {
     @Produces(MediaType.APPLICATION_JSON)
     Uni<Response> deleteDespesa(
         @HeaderParam("Authorization") String authHeader,
-        @QueryParam("id") Long id
+        @QueryParam("id") Long id,
+        @QueryParam("version") Long version
     );
 
+    @Retry(maxRetries = 2, delay = 50, jitter = 25, maxDuration = 3000,
+        retryOn = {UpstreamServerException.class, TimeoutException.class, ProcessingException.class})
+    @Timeout(1500)
     @GET
     @Path("/por-tags")
     @Produces(MediaType.APPLICATION_JSON)
     Uni<Response> getTagSums(
         @HeaderParam("Authorization") String authHeader,
+        @HeaderParam("If-None-Match") String ifNoneMatch,
         @QueryParam("tag") String tag,
         @QueryParam("dateStart") String dateStart,
         @QueryParam("dateEnd") String dateEnd
     );
 
+    @Retry(maxRetries = 2, delay = 50, jitter = 25, maxDuration = 3000,
+        retryOn = {UpstreamServerException.class, TimeoutException.class, ProcessingException.class})
+    @Timeout(1500)
+    @GET
+    @Path("/series")
+    @Produces(MediaType.APPLICATION_JSON)
+    Uni<Response> getSeries(
+        @HeaderParam("Authorization") String authHeader,
+        @HeaderParam("If-None-Match") String ifNoneMatch,
+        @QueryParam("granularity") String granularity,
+        @QueryParam("dateStart") String dateStart,
+        @QueryParam("dateEnd") String dateEnd,
+        @QueryParam("byTag") Boolean byTag
+    );
+
+    @Retry(maxRetries = 2, delay = 50, jitter = 25, maxDuration = 2000,
+        retryOn = {UpstreamServerException.class, TimeoutException.class, ProcessingException.class})
+    @Timeout(1000)
     @GET
     @Path("/saldo")
     @Produces(MediaType.APPLICATION_JSON)
-    Uni<Response> getSaldo(@HeaderParam("Authorization") String authHeader);
+    Uni<Response> getSaldo(
+        @HeaderParam("Authorization") String authHeader,
+        @HeaderParam("If-None-Match") String ifNoneMatch,
+        @QueryParam("asOf") String asOf
+    );
+
+    // Stream SSE de longa duração: sem retry, com timeout e bulkhead próprios no lugar dos padrões da interface
+    @Timeout(30000)
+    @Bulkhead(value = 256, waitingTaskQueue = 256)
+    @GET
+    @Path("/saldo/stream")
+    @Produces(MediaType.SERVER_SENT_EVENTS)
+    @RestStreamElementType(MediaType.APPLICATION_JSON)
+    Multi<JsonNode> streamSaldo(@HeaderParam("Authorization") String authHeader);
 }
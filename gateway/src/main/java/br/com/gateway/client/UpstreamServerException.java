@@ -0,0 +1,17 @@
+package br.com.gateway.client;
+
+import org.jboss.resteasy.reactive.ClientWebApplicationException;
+
+import jakarta.ws.rs.core.Response;
+
+/**
+ * Resposta 5xx de um serviço de destino. Separada dos 4xx para que só falhas do servidor
+ * contem para o circuit breaker e disparem retry; continua sendo uma
+ * {@link ClientWebApplicationException}, então o repasse de status/corpo não muda.
+ */
+public class UpstreamServerException extends ClientWebApplicationException {
+
+    public UpstreamServerException(Response response) {
+        super("Serviço respondeu HTTP " + response.getStatus(), response);
+    }
+}
@@ -0,0 +1,20 @@
+package br.com.gateway.client;
+
+import org.eclipse.microprofile.rest.client.ext.ResponseExceptionMapper;
+
+import jakarta.ws.rs.core.MultivaluedMap;
+import jakarta.ws.rs.core.Response;
+
+// Só trata 5xx; os 4xx seguem para o mapper padrão (ClientWebApplicationException)
+public class UpstreamServerExceptionMapper implements ResponseExceptionMapper<UpstreamServerException> {
+
+    @Override
+    public boolean handles(int status, MultivaluedMap<String, Object> headers) {
+        return status >= 500;
+    }
+
+    @Override
+    public UpstreamServerException toThrowable(Response response) {
+        return new UpstreamServerException(response);
+    }
+}
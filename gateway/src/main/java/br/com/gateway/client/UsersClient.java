@@ -1,5 +1,13 @@
 package br.com.gateway.client;
 
+import java.time.temporal.ChronoUnit;
+
+import org.eclipse.microprofile.faulttolerance.Bulkhead;
+import org.eclipse.microprofile.faulttolerance.CircuitBreaker;
+import org.eclipse.microprofile.faulttolerance.Retry;
+import org.eclipse.microprofile.faulttolerance.Timeout;
+import org.eclipse.microprofile.faulttolerance.exceptions.TimeoutException;
+import org.eclipse.microprofile.rest.client.annotation.RegisterProvider;
 import org.eclipse.microprofile.rest.client.inject.RegisterRestClient;
 
 import io.smallrye.mutiny.Uni;
@@ -7,10 +15,18 @@ import jakarta.ws.rs.HeaderParam;
 import jakarta.ws.rs.POST;
 import jakarta.ws.rs.PATCH;
 import jakarta.ws.rs.Path;
+import jakarta.ws.rs.ProcessingException;
 import jakarta.ws.rs.Produces;
 import jakarta.ws.rs.core.MediaType;
 import jakarta.ws.rs.core.Response;
 
+// Cada método tem seu próprio breaker e bulkhead: uma rota lenta não consome a capacidade das outras.
+// Só 5xx, timeout e erro de conexão contam como falha; 4xx é resposta válida do serviço.
+@RegisterProvider(UpstreamServerExceptionMapper.class)
+@Bulkhead(value = 32, waitingTaskQueue = 64)
+@CircuitBreaker(requestVolumeThreshold = 20, failureRatio = 0.5, delay = 5, delayUnit = ChronoUnit.SECONDS,
+    successThreshold = 3, failOn = {UpstreamServerException.class, TimeoutException.class, ProcessingException.class})
+@Timeout(5000)
 @Path("/users")
 @RegisterRestClient(configKey = "users-api")
 public interface UsersClient {
@@ -23,6 +39,16 @@ public interface UsersClient {
         @HeaderParam("password") String password
     );
 
+    @POST
+    @Path("/refresh")
+    @Produces(MediaType.TEXT_PLAIN)
+    Uni<Response> refresh(@HeaderParam("refreshToken") String refreshToken);
+
+    @POST
+    @Path("/logout")
+    @Produces(MediaType.TEXT_PLAIN)
+    Uni<Response> logout(@HeaderParam("refreshToken") String refreshToken);
+
     @POST
     @Path("/create")
     @Produces(MediaType.APPLICATION_JSON)
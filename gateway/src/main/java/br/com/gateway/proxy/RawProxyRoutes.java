@@ -0,0 +1,202 @@
+package br.com.gateway.proxy;
+
+import java.net.URI;
+import java.time.Duration;
+import java.util.List;
+import java.util.Set;
+
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+
+import io.quarkus.logging.Log;
+import io.quarkus.runtime.configuration.MemorySize;
+import io.quarkus.vertx.http.runtime.RouteConstants;
+import io.vertx.core.Vertx;
+import io.vertx.core.http.HttpClient;
+import io.vertx.core.http.HttpClientOptions;
+import io.vertx.core.http.HttpClientResponse;
+import io.vertx.core.http.HttpHeaders;
+import io.vertx.core.http.HttpServerRequest;
+import io.vertx.core.http.HttpServerResponse;
+import io.vertx.core.http.RequestOptions;
+import io.vertx.ext.web.Router;
+import io.vertx.ext.web.RoutingContext;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.event.Observes;
+import jakarta.inject.Inject;
+
+/**
+ * Modo proxy "cru": as rotas configuradas em gateway.proxy.raw.paths não passam pelo JAX-RS.
+ * Corpo de requisição e resposta são repassados como buffers via pipe (com backpressure),
+ * mantendo status e headers; o gateway nunca monta a resposta inteira em memória.
+ *
+ * <p>O mapeamento segue o dos REST clients: /api/gastos/** vai para gastos-api /gastos/**
+ * e /api/users/** para users-api /users/**. Filtros JAX-RS (rate limit, fault tolerance,
+ * {@code @RolesAllowed}) não se aplicam; o serviço de destino continua validando o JWT.
+ *
+ * <p>A importação de extratos (/api/gastos/despesas/import) passa sempre por aqui, mesmo com o modo
+ * cru desligado: o REST client montaria o arquivo inteiro em memória. Ela tem limite de corpo
+ * próprio ({@code gateway.import.max-body-size}); as demais rotas seguem o limite global.
+ */
+@ApplicationScoped
+public class RawProxyRoutes {
+
+    private static final String API_PREFIX = "/api";
+
+    private static final String IMPORT_PATH = "/api/gastos/despesas/import";
+
+    private static final String CONTENT_LENGTH_KEY = "gateway.import.content-length";
+
+    // Headers hop-by-hop (RFC 9110) não são repassados
+    private static final Set<String> HOP_BY_HOP = Set.of(
+        "connection", "keep-alive", "proxy-authenticate", "proxy-authorization",
+        "te", "trailer", "transfer-encoding", "upgrade", "host");
+
+    @ConfigProperty(name = "gateway.proxy.raw.enabled", defaultValue = "false")
+    boolean enabled;
+
+    @ConfigProperty(name = "gateway.proxy.raw.paths", defaultValue = "/api/gastos/despesas/")
+    List<String> paths;
+
+    @ConfigProperty(name = "gateway.proxy.raw.idle-timeout", defaultValue = "30s")
+    Duration idleTimeout;
+
+    @ConfigProperty(name = "gateway.import.max-body-size", defaultValue = "512M")
+    MemorySize importMaxBodySize;
+
+    @ConfigProperty(name = "quarkus.rest-client.gastos-api.url")
+    URI gastosUrl;
+
+    @ConfigProperty(name = "quarkus.rest-client.users-api.url")
+    URI usersUrl;
+
+    @Inject
+    Vertx vertx;
+
+    private HttpClient client;
+
+    void register(@Observes Router router) {
+        client = vertx.createHttpClient(new HttpClientOptions()
+            .setKeepAlive(true)
+            .setIdleTimeout((int) idleTimeout.toSeconds()));
+
+        // Cercam o handler do limite global (ROUTE_ORDER_UPLOAD_LIMIT) só na rota de importação
+        router.route(IMPORT_PATH).order(RouteConstants.ROUTE_ORDER_UPLOAD_LIMIT - 1).handler(this::importLimit);
+        router.route(IMPORT_PATH).order(RouteConstants.ROUTE_ORDER_UPLOAD_LIMIT + 1).handler(ctx -> {
+            String length = ctx.get(CONTENT_LENGTH_KEY);
+            if (length != null) {
+                ctx.request().headers().set(HttpHeaders.CONTENT_LENGTH, length);
+            }
+            ctx.next();
+        });
+        router.post(IMPORT_PATH).handler(this::proxy);
+
+        if (!enabled) {
+            return;
+        }
+        for (String path : paths) {
+            router.route(path.endsWith("/") ? path + "*" : path).handler(this::proxy);
+            Log.infof("Proxy cru ativo para %s", path);
+        }
+    }
+
+    // Aplica o limite da importação ao Content-Length e o esconde do limite global
+    private void importLimit(RoutingContext ctx) {
+        String length = ctx.request().getHeader(HttpHeaders.CONTENT_LENGTH);
+        if (length != null) {
+            long declared;
+            try {
+                declared = Long.parseLong(length.trim());
+            } catch (NumberFormatException e) {
+                ctx.next();
+                return;
+            }
+            if (declared > importMaxBodySize.asLongValue()) {
+                ctx.response().setStatusCode(413)
+                    .putHeader(HttpHeaders.CONNECTION, "close")
+                    .endHandler(v -> ctx.request().connection().close())
+                    .end();
+                return;
+            }
+            ctx.put(CONTENT_LENGTH_KEY, length);
+            ctx.request().headers().remove(HttpHeaders.CONTENT_LENGTH);
+        }
+        ctx.next();
+    }
+
+    private void proxy(RoutingContext ctx) {
+        HttpServerRequest request = ctx.request();
+        URI target = targetFor(request.path());
+        if (target == null) {
+            ctx.next();
+            return;
+        }
+        // Segura o corpo até a conexão com o destino estar pronta
+        request.pause();
+
+        RequestOptions options = new RequestOptions()
+            .setMethod(request.method())
+            .setHost(target.getHost())
+            .setPort(target.getPort())
+            .setSsl("https".equalsIgnoreCase(target.getScheme()))
+            .setURI(target.getRawPath() + (request.query() != null ? "?" + request.query() : ""))
+            .setIdleTimeout(idleTimeout.toMillis());
+
+        client.request(options)
+            .onSuccess(upstream -> {
+                request.headers().forEach(header -> {
+                    if (!HOP_BY_HOP.contains(header.getKey().toLowerCase())) {
+                        upstream.headers().add(header.getKey(), header.getValue());
+                    }
+                });
+                upstream.headers().add("X-Forwarded-For", request.remoteAddress().hostAddress());
+                upstream.send(request)
+                    .onSuccess(response -> relay(response, request.response()))
+                    .onFailure(e -> badGateway(request.response(), e));
+            })
+            .onFailure(e -> {
+                request.resume();
+                badGateway(request.response(), e);
+            });
+    }
+
+    private static void relay(HttpClientResponse upstream, HttpServerResponse response) {
+        response.setStatusCode(upstream.statusCode());
+        response.setStatusMessage(upstream.statusMessage());
+        upstream.headers().forEach(header -> {
+            if (!HOP_BY_HOP.contains(header.getKey().toLowerCase())) {
+                response.headers().add(header.getKey(), header.getValue());
+            }
+        });
+        if (!response.headers().contains("Content-Length")) {
+            response.setChunked(true);
+        }
+        // pipeTo pausa o upstream quando o buffer de escrita do cliente enche
+        upstream.pipeTo(response);
+    }
+
+    private static void badGateway(HttpServerResponse response, Throwable e) {
+        Log.warnf("Proxy cru falhou: %s", e.getMessage());
+        if (!response.headWritten()) {
+            response.setStatusCode(502).end("Serviço indisponível");
+        } else {
+            response.reset();
+        }
+    }
+
+    private URI targetFor(String path) {
+        if (!path.startsWith(API_PREFIX + "/")) {
+            return null;
+        }
+        String downstream = path.substring(API_PREFIX.length());
+        URI base;
+        if (downstream.startsWith("/gastos/")) {
+            base = gastosUrl;
+        } else if (downstream.startsWith("/users/")) {
+            base = usersUrl;
+        } else {
+            return null;
+        }
+        int port = base.getPort() != -1 ? base.getPort() : ("https".equalsIgnoreCase(base.getScheme()) ? 443 : 80);
+        return URI.create(base.getScheme() + "://" + base.getHost() + ":" + port + downstream);
+    }
+}
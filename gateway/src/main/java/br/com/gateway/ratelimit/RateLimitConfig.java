@@ -0,0 +1,49 @@
+package br.com.gateway.ratelimit;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.Optional;
+
+import io.smallrye.config.ConfigMapping;
+import io.smallrye.config.WithDefault;
+
+/**
+ * Limites por rota, ex.:
+ * <pre>
+ * gateway.rate-limit.routes.login.path=/api/users/login
+ * gateway.rate-limit.routes.login.per-ip.capacity=20
+ * gateway.rate-limit.routes.login.per-ip.period=1m
+ * gateway.rate-limit.routes.login.per-email.capacity=5
+ * gateway.rate-limit.routes.login.per-email.period=1m
+ * </pre>
+ */
+@ConfigMapping(prefix = "gateway.rate-limit")
+public interface RateLimitConfig {
+
+    @WithDefault("true")
+    boolean enabled();
+
+    // Teto de baldes em memória; os menos usados saem primeiro
+    @WithDefault("100000")
+    long maxBuckets();
+
+    // Balde sem acesso por esse tempo é descartado (já estaria cheio de novo)
+    @WithDefault("10m")
+    Duration idleTimeout();
+
+    Map<String, Route> routes();
+
+    interface Route {
+        String path();
+
+        Optional<Limit> perIp();
+
+        Optional<Limit> perEmail();
+    }
+
+    interface Limit {
+        int capacity();
+
+        Duration period();
+    }
+}
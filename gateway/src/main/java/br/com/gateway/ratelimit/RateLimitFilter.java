@@ -0,0 +1,37 @@
+package br.com.gateway.ratelimit;
+
+import java.util.concurrent.TimeUnit;
+
+import org.jboss.resteasy.reactive.server.ServerRequestFilter;
+
+import io.vertx.core.http.HttpServerRequest;
+import jakarta.inject.Inject;
+import jakarta.ws.rs.core.Response;
+
+/**
+ * Aplica os limites antes de qualquer chamada ao serviço de destino, para que uma rajada
+ * de logins não chegue ao BCrypt do users. O IP vem de remoteAddress (com
+ * quarkus.http.proxy.proxy-address-forwarding ligado, já considera X-Forwarded-For).
+ */
+public class RateLimitFilter {
+
+    @Inject
+    RateLimiter rateLimiter;
+
+    @ServerRequestFilter(preMatching = true)
+    public Response limit(HttpServerRequest request) {
+        if (!rateLimiter.enabled()) {
+            return null;
+        }
+        String clientIp = request.remoteAddress() != null ? request.remoteAddress().hostAddress() : null;
+        long waitNanos = rateLimiter.check(request.path(), clientIp, request.getHeader("email"));
+        if (waitNanos == 0) {
+            return null;
+        }
+        long retryAfter = Math.max(1, TimeUnit.NANOSECONDS.toSeconds(waitNanos + TimeUnit.SECONDS.toNanos(1) - 1));
+        return Response.status(Response.Status.TOO_MANY_REQUESTS)
+            .header("Retry-After", retryAfter)
+            .entity("Muitas requisições, tente novamente em " + retryAfter + "s")
+            .build();
+    }
+}
@@ -0,0 +1,67 @@
+package br.com.gateway.ratelimit;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+
+/**
+ * Guarda os baldes por (rota, IP) e (rota, e-mail). A memória é limitada por
+ * gateway.rate-limit.max-buckets e baldes ociosos expiram após idle-timeout.
+ */
+@ApplicationScoped
+public class RateLimiter {
+
+    @Inject
+    RateLimitConfig config;
+
+    private Cache<String, TokenBucket> buckets;
+    private final Map<String, RouteLimits> routesByPath = new HashMap<>();
+
+    @PostConstruct
+    void init() {
+        buckets = Caffeine.newBuilder()
+            .maximumSize(config.maxBuckets())
+            .expireAfterAccess(config.idleTimeout())
+            .build();
+        config.routes().forEach((name, route) ->
+            routesByPath.put(route.path(), new RouteLimits(name, route.perIp().orElse(null), route.perEmail().orElse(null))));
+    }
+
+    public boolean enabled() {
+        return config.enabled() && !routesByPath.isEmpty();
+    }
+
+    /**
+     * @return 0 se a requisição pode seguir, ou os nanos até o próximo token disponível
+     */
+    public long check(String path, String clientIp, String email) {
+        RouteLimits route = routesByPath.get(path);
+        if (route == null) {
+            return 0;
+        }
+        long now = System.nanoTime();
+        if (route.perIp() != null && clientIp != null) {
+            long wait = acquire(route.name() + "|ip|" + clientIp, route.perIp(), now);
+            if (wait > 0) {
+                return wait;
+            }
+        }
+        if (route.perEmail() != null && email != null && !email.isBlank()) {
+            return acquire(route.name() + "|email|" + email.trim().toLowerCase(), route.perEmail(), now);
+        }
+        return 0;
+    }
+
+    private long acquire(String key, RateLimitConfig.Limit limit, long now) {
+        TokenBucket bucket = buckets.get(key, k -> new TokenBucket(limit.capacity(), limit.period().toNanos()));
+        return bucket.tryAcquire(now);
+    }
+
+    private record RouteLimits(String name, RateLimitConfig.Limit perIp, RateLimitConfig.Limit perEmail) {}
+}
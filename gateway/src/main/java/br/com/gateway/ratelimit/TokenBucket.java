@@ -0,0 +1,39 @@
+package br.com.gateway.ratelimit;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Token bucket sem lock, no formato GCRA: o estado inteiro é um único long (o instante teórico
+ * em que o balde volta a ficar cheio), atualizado por CAS. Capacidade = rajada máxima,
+ * reposição = capacity tokens a cada period.
+ */
+final class TokenBucket {
+
+    private final long emissionIntervalNanos;
+    private final long burstToleranceNanos;
+    private final AtomicLong theoreticalArrival = new AtomicLong(Long.MIN_VALUE);
+
+    TokenBucket(int capacity, long periodNanos) {
+        this.emissionIntervalNanos = Math.max(1, periodNanos / capacity);
+        this.burstToleranceNanos = emissionIntervalNanos * (capacity - 1);
+    }
+
+    /**
+     * Consome um token.
+     *
+     * @return 0 se o token foi concedido, ou quantos nanos faltam para o próximo
+     */
+    long tryAcquire(long nowNanos) {
+        while (true) {
+            long current = theoreticalArrival.get();
+            long tat = current == Long.MIN_VALUE ? nowNanos : Math.max(current, nowNanos);
+            long wait = tat - burstToleranceNanos - nowNanos;
+            if (wait > 0) {
+                return wait;
+            }
+            if (theoreticalArrival.compareAndSet(current, tat + emissionIntervalNanos)) {
+                return 0;
+            }
+        }
+    }
+}
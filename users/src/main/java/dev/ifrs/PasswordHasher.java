@@ -0,0 +1,76 @@
+package dev.ifrs;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+
+import io.smallrye.mutiny.Uni;
+import io.vertx.core.Vertx;
+import io.vertx.core.WorkerExecutor;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import jakarta.ws.rs.WebApplicationException;
+import jakarta.ws.rs.core.Response;
+
+/**
+ * Executa o BCrypt num pool de workers dedicado e limitado, fora do event loop do Vert.x.
+ * Quando o pool e a fila estão cheios a requisição falha na hora com 503, em vez de esperar.
+ */
+@ApplicationScoped
+public class PasswordHasher {
+
+    @ConfigProperty(name = "users.bcrypt.cost", defaultValue = "12")
+    int cost;
+
+    @ConfigProperty(name = "users.bcrypt.pool-size", defaultValue = "4")
+    int poolSize;
+
+    @ConfigProperty(name = "users.bcrypt.max-queue", defaultValue = "32")
+    int maxQueue;
+
+    @Inject
+    Vertx vertx;
+
+    private BCryptPasswordEncoder encoder;
+    private WorkerExecutor executor;
+    private final AtomicInteger pending = new AtomicInteger();
+
+    @PostConstruct
+    void init() {
+        encoder = new BCryptPasswordEncoder(cost);
+        executor = vertx.createSharedWorkerExecutor("bcrypt-pool", poolSize);
+    }
+
+    @PreDestroy
+    void close() {
+        executor.close();
+    }
+
+    public Uni<String> hash(String password) {
+        return submit(() -> encoder.encode(password));
+    }
+
+    public Uni<Boolean> matches(String password, String hash) {
+        return submit(() -> encoder.matches(password, hash));
+    }
+
+    private <T> Uni<T> submit(Callable<T> work) {
+        return Uni.createFrom().deferred(() -> {
+            if (pending.incrementAndGet() > poolSize + maxQueue) {
+                pending.decrementAndGet();
+                return Uni.createFrom().failure(new WebApplicationException(
+                    Response.status(Response.Status.SERVICE_UNAVAILABLE)
+                        .header("Retry-After", "1")
+                        .entity("Servidor ocupado, tente novamente")
+                        .build()));
+            }
+            // O resultado volta no contexto Vert.x de quem chamou, então o Hibernate Reactive continua válido
+            return Uni.createFrom().completionStage(() -> executor.executeBlocking(work, false).toCompletionStage())
+                .onTermination().invoke(pending::decrementAndGet);
+        });
+    }
+}
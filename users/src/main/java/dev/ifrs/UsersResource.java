@@ -1,11 +1,21 @@
 package dev.ifrs;
 
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Base64;
+import java.util.HexFormat;
 
+import org.eclipse.microprofile.config.inject.ConfigProperty;
 import org.eclipse.microprofile.jwt.Claims;
 import org.eclipse.microprofile.jwt.JsonWebToken;
-import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
 
+import dev.ifrs.model.RefreshToken;
 import dev.ifrs.model.User;
+import io.quarkus.hibernate.reactive.panache.Panache;
 import io.quarkus.hibernate.reactive.panache.common.WithTransaction;
 import io.quarkus.logging.Log;
 import io.quarkus.security.identity.SecurityIdentity;
@@ -25,52 +35,140 @@ import jakarta.ws.rs.core.Response;
 public class UsersResource {
 
     private static final String ISSUER = "users-issuer";
-    private static final BCryptPasswordEncoder encoder = new BCryptPasswordEncoder(12);
+    private static final String REFRESH_TOKEN_HEADER = "refreshToken";
+    private static final SecureRandom RANDOM = new SecureRandom();
+
+    @ConfigProperty(name = "users.refresh-token.ttl", defaultValue = "30d")
+    Duration refreshTokenTtl;
+
     @Inject
     SecurityIdentity securityIdentity;
 
     @Inject
     JsonWebToken jwt;
 
-    private String hashPassword(String password) {
-        return encoder.encode(password);
-    }
-
-    private boolean verifyPassword(String password, String hash) {
-        return encoder.matches(password, hash);
-    }
+    // BCrypt roda num pool próprio; as transações só abrem depois do hash para não segurar conexões
+    @Inject
+    PasswordHasher passwordHasher;
 
 
     @POST
     @Path("/login")
     @Produces(MediaType.TEXT_PLAIN)
-    @WithTransaction
     public Uni<Response> getToken(
         @HeaderParam("email") String email,
         @HeaderParam("password") String password
     ) {
-        return User.<User>find("email", email).firstResult()
-            .onItem().transform(user -> {
-                if (user != null && verifyPassword(password, user.getPassword())) {
-                    String token = Jwt.issuer(ISSUER)
-                        .upn(user.getEmail())
-                        .groups("user")
-                        .claim(Claims.nickname, user.getName())
-                        .claim("id", user.id)
-                        .claim(Claims.email, user.getEmail())
-                        .expiresIn(3600)  // Token expira em 1 hora (3600 segundos)
-                        .sign();
-                    return Response.ok(token).build();
-                } else {
-                    return Response.status(Response.Status.UNAUTHORIZED).entity("Credenciais inválidas").build();
+        return Panache.withSession(() -> User.<User>find("email", email).firstResult())
+            .onItem().transformToUni(user -> {
+                if (user == null) {
+                    return Uni.createFrom().item(invalidCredentials());
                 }
+                return passwordHasher.matches(password, user.getPassword())
+                    .onItem().transformToUni(valid -> {
+                        if (!valid) {
+                            return Uni.createFrom().item(invalidCredentials());
+                        }
+                        return Panache.withTransaction(() -> issueRefreshToken(user.id, LocalDateTime.now()))
+                            .onItem().transform(refreshToken -> Response.ok(issueAccessToken(user))
+                                .header(REFRESH_TOKEN_HEADER, refreshToken)
+                                .build());
+                    });
             });
     }
 
+    /**
+     * Troca um refresh token válido por um novo JWT com os mesmos claims, sem passar pelo BCrypt.
+     * O refresh token é rotacionado: o antigo é revogado e um novo volta no header refreshToken.
+     */
+    @POST
+    @Path("/refresh")
+    @Produces(MediaType.TEXT_PLAIN)
+    public Uni<Response> refresh(@HeaderParam(REFRESH_TOKEN_HEADER) String refreshToken) {
+        if (refreshToken == null || refreshToken.isBlank()) {
+            return Uni.createFrom().item(Response.status(Response.Status.UNAUTHORIZED).entity("Refresh token necessário").build());
+        }
+        LocalDateTime now = LocalDateTime.now();
+
+        return Panache.withTransaction(() -> RefreshToken.findByHash(sha256(refreshToken))
+            .onItem().transformToUni(stored -> {
+                if (stored == null || !stored.isActive(now)) {
+                    return Uni.createFrom().item(invalidRefreshToken());
+                }
+                // Revogação condicional: dois refresh concorrentes com o mesmo token não geram duas sessões
+                return RefreshToken.update("revoked = true where id = ?1 and revoked = false", stored.id)
+                    .onItem().transformToUni(claimed -> {
+                        if (claimed == 0) {
+                            return Uni.createFrom().item(invalidRefreshToken());
+                        }
+                        return User.<User>findById(stored.getIdUser())
+                            .onItem().transformToUni(user -> {
+                                if (user == null) {
+                                    return Uni.createFrom().item(invalidRefreshToken());
+                                }
+                                return issueRefreshToken(user.id, now)
+                                    .onItem().transform(next -> Response.ok(issueAccessToken(user))
+                                        .header(REFRESH_TOKEN_HEADER, next)
+                                        .build());
+                            });
+                    });
+            }));
+    }
+
+    @POST
+    @Path("/logout")
+    @Produces(MediaType.TEXT_PLAIN)
+    public Uni<Response> logout(@HeaderParam(REFRESH_TOKEN_HEADER) String refreshToken) {
+        if (refreshToken == null || refreshToken.isBlank()) {
+            return Uni.createFrom().item(Response.noContent().build());
+        }
+        return Panache.withTransaction(() ->
+                RefreshToken.update("revoked = true where tokenHash = ?1", sha256(refreshToken)))
+            .replaceWith(Response.noContent().build());
+    }
+
+    private String issueAccessToken(User user) {
+        return Jwt.issuer(ISSUER)
+            .upn(user.getEmail())
+            .groups("user")
+            .claim(Claims.nickname, user.getName())
+            .claim("id", user.id)
+            .claim(Claims.email, user.getEmail())
+            .expiresIn(3600)  // Token expira em 1 hora (3600 segundos)
+            .sign();
+    }
+
+    // Gera e grava um refresh token novo; precisa rodar dentro de uma transação
+    private Uni<String> issueRefreshToken(Long userId, LocalDateTime now) {
+        byte[] bytes = new byte[32];
+        RANDOM.nextBytes(bytes);
+        String token = Base64.getUrlEncoder().withoutPadding().encodeToString(bytes);
+        RefreshToken stored = new RefreshToken(sha256(token), userId, now.plus(refreshTokenTtl));
+        return RefreshToken.purgeInactive(userId, now)
+            .onItem().transformToUni(purged -> stored.persist())
+            .replaceWith(token);
+    }
+
+    private static String sha256(String value) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(value.getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(digest);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static Response invalidRefreshToken() {
+        return Response.status(Response.Status.UNAUTHORIZED).entity("Refresh token inválido").build();
+    }
+
+    private static Response invalidCredentials() {
+        return Response.status(Response.Status.UNAUTHORIZED).entity("Credenciais inválidas").build();
+    }
+
     @POST
     @Path("/create")
     @Produces(MediaType.APPLICATION_JSON)
-    @WithTransaction
     public Uni<User> createUser(
         @HeaderParam("name") String name,
         @HeaderParam("email") String email,
@@ -80,16 +178,18 @@ public class UsersResource {
         User user = new User();
         user.setName(name);
         user.setEmail(email);
-        user.setPassword(hashPassword(password));
         user.setDataCriacao(java.time.LocalDateTime.now().toString());
-        return user.persistAndFlush().map(v -> user);
+        return passwordHasher.hash(password)
+            .onItem().transformToUni(hash -> {
+                user.setPassword(hash);
+                return Panache.withTransaction(() -> user.persistAndFlush().map(v -> user));
+            });
     }
 
     @PATCH
     @Path("/updateUser")
     @Produces(MediaType.APPLICATION_JSON)
     @RolesAllowed({"user"})
-    @WithTransaction
     public Uni<Response> updateUser(
         @HeaderParam("name") String name,
         @HeaderParam("email") String email,
@@ -115,15 +215,18 @@ public class UsersResource {
             }
         }
 
-        return User.<User>findById(tokenId)
-            .onItem().ifNotNull().transformToUni(user -> {
-                user.setName(name);
-                user.setEmail(email);
-                user.setPassword(hashPassword(password));
-                return user.persistAndFlush()
-                    .onItem().transform(updated -> Response.ok(updated).build());
-            })
-            .onItem().ifNull().continueWith(Response.status(Response.Status.NOT_FOUND).entity("Usuário não encontrado").build());
+        return passwordHasher.hash(password)
+            .onItem().transformToUni(hash -> Panache.withTransaction(() -> User.<User>findById(tokenId)
+                .onItem().ifNotNull().transformToUni(user -> {
+                    user.setName(name);
+                    user.setEmail(email);
+                    user.setPassword(hash);
+                    // A senha mudou: sessões abertas com refresh token precisam logar de novo
+                    return user.persistAndFlush()
+                        .call(updated -> RefreshToken.revokeAll(tokenId))
+                        .onItem().transform(updated -> Response.ok(updated).build());
+                })
+                .onItem().ifNull().continueWith(Response.status(Response.Status.NOT_FOUND).entity("Usuário não encontrado").build())));
     }
 
     @POST
@@ -154,7 +257,8 @@ public class UsersResource {
 
         return User.<User>findById(tokenId)
             .onItem().ifNotNull().transformToUni(user ->
-                user.delete()
+                RefreshToken.revokeAll(tokenId)
+                    .call(revoked -> user.delete())
                     .replaceWith(Response.noContent().build())
             )
             .onItem().ifNull().continueWith(Response.status(Response.Status.NOT_FOUND).entity("Usuário não encontrado").build());
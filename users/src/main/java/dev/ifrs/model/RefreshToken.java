@@ -0,0 +1,79 @@
+package dev.ifrs.model;
+
+import java.time.LocalDateTime;
+
+import io.quarkus.hibernate.reactive.panache.PanacheEntity;
+import io.smallrye.mutiny.Uni;
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Index;
+import jakarta.persistence.Table;
+
+/**
+ * Refresh token emitido no login. Só o SHA-256 do token é guardado, então um dump da
+ * tabela não permite renovar sessões.
+ */
+@Entity
+@Table(name = "refresh_token", indexes = {
+    @Index(name = "idx_refresh_token_user", columnList = "idUser")
+})
+public class RefreshToken extends PanacheEntity {
+
+    @Column(nullable = false, unique = true, length = 64)
+    private String tokenHash;
+
+    @Column(nullable = false)
+    private Long idUser;
+
+    @Column(nullable = false)
+    private LocalDateTime expiresAt;
+
+    @Column(nullable = false)
+    private boolean revoked;
+
+    public RefreshToken() {
+    }
+
+    public RefreshToken(String tokenHash, Long idUser, LocalDateTime expiresAt) {
+        this.tokenHash = tokenHash;
+        this.idUser = idUser;
+        this.expiresAt = expiresAt;
+    }
+
+    public String getTokenHash() {
+        return tokenHash;
+    }
+
+    public Long getIdUser() {
+        return idUser;
+    }
+
+    public LocalDateTime getExpiresAt() {
+        return expiresAt;
+    }
+
+    public boolean isRevoked() {
+        return revoked;
+    }
+    public void setRevoked(boolean revoked) {
+        this.revoked = revoked;
+    }
+
+    public boolean isActive(LocalDateTime now) {
+        return !revoked && expiresAt.isAfter(now);
+    }
+
+    public static Uni<RefreshToken> findByHash(String tokenHash) {
+        return find("tokenHash", tokenHash).firstResult();
+    }
+
+    // Revoga todas as sessões do usuário (troca de senha, exclusão da conta)
+    public static Uni<Integer> revokeAll(Long userId) {
+        return update("revoked = true where idUser = ?1 and revoked = false", userId);
+    }
+
+    // Limpa os tokens do usuário que já não servem mais; roda a cada emissão, pelo índice de idUser
+    public static Uni<Long> purgeInactive(Long userId, LocalDateTime now) {
+        return delete("idUser = ?1 and (revoked = true or expiresAt < ?2)", userId, now);
+    }
+}